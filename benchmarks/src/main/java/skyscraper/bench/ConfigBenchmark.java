@@ -0,0 +1,92 @@
+package skyscraper.bench;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the individual Configuration operations the Backtracker calls
+ * on every node.  They are measured on a board half way down the search:
+ * starting from the initial board, the first valid successor is taken
+ * until half of the empty cells are filled (or there is no valid
+ * successor), which gives a realistic mix of filled and empty cells.
+ *
+ * @author Blake Batson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigBenchmark {
+    @Param({"test0", "test1", "test2", "test3", "test4", "test5", "test6",
+            "test7", "test8", "test9", "test10", "test11", "test12", "test13"})
+    public String board;
+
+    @Param({"classic", "bitmask", "bitmask incremental"})
+    public String engine;
+
+    private Object config;
+
+    @Setup
+    public void setup() throws Throwable {
+        config = Targets.readBoard(board, engine);
+        // walk down the leftmost valid path for roughly half of the board
+        int depth = emptyCells(config) / 2;
+        for (int i = 0; i < depth; i++) {
+            Object next = null;
+            for (Object child : (Collection<?>) Targets.GET_SUCCESSORS.invokeExact(config)) {
+                if ((boolean) Targets.IS_VALID.invokeExact(child)) {
+                    next = child;
+                    break;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            config = next;
+        }
+    }
+
+    /**
+     * Count the empty cells of a board from its printed form, which every
+     * engine shares.
+     */
+    private static int emptyCells(Object config) {
+        String text = config.toString();
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '.') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public Collection<?> getSuccessors() throws Throwable {
+        return (Collection<?>) Targets.GET_SUCCESSORS.invokeExact(config);
+    }
+
+    @Benchmark
+    public boolean isValid() throws Throwable {
+        return (boolean) Targets.IS_VALID.invokeExact(config);
+    }
+
+    @Benchmark
+    public boolean isGoal() throws Throwable {
+        return (boolean) Targets.IS_GOAL.invokeExact(config);
+    }
+}
@@ -0,0 +1,45 @@
+package skyscraper.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of reading a board file into a SkyscraperConfig, including
+ * fillKnown().
+ *
+ * @author Blake Batson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+    @Param({"test0", "test1", "test2", "test3", "test4", "test5", "test6",
+            "test7", "test8", "test9", "test10", "test11", "test12", "test13"})
+    public String board;
+
+    private String file;
+
+    @Setup
+    public void setup() {
+        file = Targets.boardFile(board);
+    }
+
+    @Benchmark
+    public Object construct() throws Throwable {
+        return (Object) Targets.READ_CLASSIC.invokeExact(file);
+    }
+}
@@ -0,0 +1,64 @@
+package skyscraper.bench;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end solve of every board with every search, the same path
+ * Skyscraper.main takes minus the printing.  A fresh initial board is read
+ * before each call (outside of the measurement) because the in place
+ * search leaves its board solved.
+ *
+ * The classic engine needs about a minute on test13 and two on test12,
+ * narrow the run with -p board=... -p engine=... when that is too long.
+ *
+ * @author Blake Batson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class SolveBenchmark {
+    @Param({"test0", "test1", "test2", "test3", "test4", "test5", "test6",
+            "test7", "test8", "test9", "test10", "test11", "test12", "test13"})
+    public String board;
+
+    @Param({"classic", "bitmask", "bitmask incremental", "bitmask incremental inplace",
+            "bitmask incremental parallel", "bitmask incremental inplace propagate"})
+    public String engine;
+
+    private List<String> options;
+    private Object config;
+
+    @Setup(Level.Trial)
+    public void options() {
+        List<String> words = Targets.engineSpec(engine);
+        options = words.subList(1, words.size());
+    }
+
+    @Setup(Level.Invocation)
+    public void read() throws Throwable {
+        config = Targets.readBoard(board, engine);
+    }
+
+    @Benchmark
+    public Optional<?> solve() throws Throwable {
+        return (Optional<?>) Targets.SOLVE.invokeExact(config, options, false);
+    }
+}
@@ -0,0 +1,61 @@
+package skyscraper.bench;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The Dancing Links exact cover solver against the Backtracker on every
+ * board: the classic search, the fastest bitmask search, and Dancing Links
+ * on both kinds of board.  Dancing Links builds its own matrix from the
+ * board, so the time includes encoding and decoding.
+ *
+ * @author Blake Batson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class SolverBenchmark {
+    @Param({"test0", "test1", "test2", "test3", "test4", "test5", "test6",
+            "test7", "test8", "test9", "test10", "test11", "test12", "test13"})
+    public String board;
+
+    @Param({"classic", "bitmask incremental inplace propagate order=mrv",
+            "classic solver=dlx", "bitmask solver=dlx"})
+    public String engine;
+
+    private List<String> options;
+    private Object config;
+
+    @Setup(Level.Trial)
+    public void options() {
+        List<String> words = Targets.engineSpec(engine);
+        options = words.subList(1, words.size());
+    }
+
+    @Setup(Level.Invocation)
+    public void read() throws Throwable {
+        config = Targets.readBoard(board, engine);
+    }
+
+    @Benchmark
+    public Optional<?> solve() throws Throwable {
+        return (Optional<?>) Targets.SOLVE.invokeExact(config, options, false);
+    }
+}
@@ -0,0 +1,114 @@
+package skyscraper.bench;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Handles onto the solver classes.  The solver lives in the default
+ * package, which code in a named package (and JMH requires one) can not
+ * import, so every entry point is looked up once here.  The handles are
+ * static final and called with invokeExact, which the JIT inlines like a
+ * direct call.
+ *
+ * @author Blake Batson
+ */
+final class Targets {
+    /** (String) -> SkyscraperConfig */
+    static final MethodHandle READ_CLASSIC;
+
+    /** (String, List) -> Configuration, Skyscraper.readBoard with an engine */
+    static final MethodHandle READ_BOARD;
+
+    /** (Configuration, List, boolean) -> Optional, Skyscraper.solve */
+    static final MethodHandle SOLVE;
+
+    /** (Configuration) -> Collection, Configuration.getSuccessors */
+    static final MethodHandle GET_SUCCESSORS;
+
+    /** (Configuration) -> boolean, Configuration.isValid */
+    static final MethodHandle IS_VALID;
+
+    /** (Configuration) -> boolean, Configuration.isGoal */
+    static final MethodHandle IS_GOAL;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> configuration = Class.forName("Configuration");
+            Class<?> skyscraper = Class.forName("Skyscraper");
+
+            Constructor<?> classic = Class.forName("SkyscraperConfig").getDeclaredConstructor(String.class);
+            classic.setAccessible(true);
+            READ_CLASSIC = lookup.unreflectConstructor(classic)
+                    .asType(MethodType.methodType(Object.class, String.class));
+
+            Method readBoard = skyscraper.getDeclaredMethod("readBoard", String.class, String.class, List.class);
+            readBoard.setAccessible(true);
+            READ_BOARD = lookup.unreflect(readBoard)
+                    .asType(MethodType.methodType(Object.class, String.class, String.class, List.class));
+
+            Method solve = skyscraper.getDeclaredMethod("solve", configuration, List.class, boolean.class);
+            solve.setAccessible(true);
+            SOLVE = lookup.unreflect(solve)
+                    .asType(MethodType.methodType(Optional.class, Object.class, List.class, boolean.class));
+
+            GET_SUCCESSORS = lookup.findVirtual(configuration, "getSuccessors", MethodType.methodType(Collection.class))
+                    .asType(MethodType.methodType(Collection.class, Object.class));
+            IS_VALID = lookup.findVirtual(configuration, "isValid", MethodType.methodType(boolean.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class));
+            IS_GOAL = lookup.findVirtual(configuration, "isGoal", MethodType.methodType(boolean.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Targets() {
+    }
+
+    /**
+     * Find a board file.  The data directory is taken from the
+     * skyscraper.data property, or found next to or above the working
+     * directory.
+     *
+     * @param board the board name, e.g. test13
+     * @return the path of the board file
+     */
+    static String boardFile(String board) {
+        String dir = System.getProperty("skyscraper.data");
+        if (dir == null) {
+            dir = new File("data").isDirectory() ? "data" : "../data";
+        }
+        return dir + File.separator + board + ".txt";
+    }
+
+    /**
+     * Split an engine description like "bitmask incremental inplace" into
+     * the engine name and its options, the same as the Skyscraper command line.
+     *
+     * @param spec the engine description
+     * @return the engine name followed by its options
+     */
+    static List<String> engineSpec(String spec) {
+        return List.of(spec.trim().split("\\s+"));
+    }
+
+    /**
+     * Read a board for an engine description.
+     *
+     * @param board the board name
+     * @param spec the engine description
+     * @return the initial configuration
+     */
+    static Object readBoard(String board, String spec) throws Throwable {
+        List<String> words = engineSpec(spec);
+        return (Object) READ_BOARD.invokeExact(boardFile(board), words.get(0), words.subList(1, words.size()));
+    }
+}
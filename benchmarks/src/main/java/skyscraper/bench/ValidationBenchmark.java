@@ -0,0 +1,86 @@
+package skyscraper.bench;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SkyscraperConfig.isValid() with its own four loops against the
+ * validation kernels, on one board of each size from 4x4 to 9x9 walked
+ * half way down the search the same way as ConfigBenchmark.
+ *
+ * The vector kernel is only in the jar when it is built with -Pvector
+ * (JDK 17 or later); without it the vector runs fail in setup rather than
+ * quietly measuring the scalar fallback.
+ *
+ * @author Blake Batson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ValidationBenchmark {
+    /** 4x4, 5x5, 6x6, 7x7, 8x8 and 9x9 */
+    @Param({"test0", "test1", "test6", "test7", "test8", "test9"})
+    public String board;
+
+    @Param({"classic", "classic kernel=scalar", "classic kernel=vector"})
+    public String engine;
+
+    private Object config;
+
+    @Setup
+    public void setup() throws Throwable {
+        if (engine.endsWith("kernel=vector")) {
+            Object kernel = Class.forName("ValidationKernel").getMethod("forName", String.class)
+                    .invoke(null, "vector");
+            if (!kernel.getClass().getName().equals("VectorKernel")) {
+                throw new IllegalStateException("the Vector API kernel is not available, build with -Pvector");
+            }
+        }
+        config = Targets.readBoard(board, engine);
+        int depth = emptyCells(config) / 2;
+        for (int i = 0; i < depth; i++) {
+            Object next = null;
+            for (Object child : (Collection<?>) Targets.GET_SUCCESSORS.invokeExact(config)) {
+                if ((boolean) Targets.IS_VALID.invokeExact(child)) {
+                    next = child;
+                    break;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            config = next;
+        }
+    }
+
+    private static int emptyCells(Object config) {
+        String text = config.toString();
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '.') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public boolean isValid() throws Throwable {
+        return (boolean) Targets.IS_VALID.invokeExact(config);
+    }
+}
@@ -0,0 +1,62 @@
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Checks the lines seen from one border all at once with the Vector API,
+ * one byte lane per line: every step away from the border loads the next
+ * block of the layout and updates every line's tallest tower, visible
+ * count and empty counts without a branch.
+ *
+ * Needs jdk.incubator.vector to compile and to run, so it lives in its own
+ * source root and ValidationKernel finds it by name.
+ *
+ * @author Blake Batson
+ */
+public class VectorKernel implements ValidationKernel {
+    /** The kernel has no state, so one instance is shared */
+    public static final VectorKernel INSTANCE = new VectorKernel();
+
+    /** One lane per line of the largest board */
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_128;
+
+    @Override
+    public boolean isValid(int size, byte[] lines, byte[][] clues) {
+        int last = size - 1;
+        return valid(size, lines, 0, STRIDE, clues[SkyscraperConfig.NORTH])
+                && valid(size, lines, (size + last) * STRIDE, -STRIDE, clues[SkyscraperConfig.EAST])
+                && valid(size, lines, last * STRIDE, -STRIDE, clues[SkyscraperConfig.SOUTH])
+                && valid(size, lines, size * STRIDE, STRIDE, clues[SkyscraperConfig.WEST]);
+    }
+
+    /**
+     * Check the lines seen from one border.
+     *
+     * @param first the block nearest the border
+     * @param step the distance to the next block away from the border
+     * @param clues the border
+     */
+    private static boolean valid(int size, byte[] lines, int first, int step, byte[] clues) {
+        ByteVector tallest = ByteVector.zero(SPECIES);
+        ByteVector count = tallest;
+        ByteVector empty = tallest;         //Empty cells before the tallest tower
+        ByteVector blanks = tallest;        //Every empty cell
+        VectorMask<Byte> past = SPECIES.maskAll(false);
+        for (int at = first, i = 0; i < size; at += step, i++) {
+            ByteVector current = ByteVector.fromArray(SPECIES, lines, at);
+            VectorMask<Byte> blank = current.eq((byte) 0);
+            blanks = blanks.add((byte) 1, blank);
+            empty = empty.add((byte) 1, blank.andNot(past));
+            count = count.add((byte) 1, current.compare(VectorOperators.GT, tallest));
+            tallest = tallest.max(current);
+            past = past.or(current.eq((byte) size));
+        }
+
+        ByteVector clue = ByteVector.fromArray(SPECIES, clues, 0);
+        VectorMask<Byte> full = blanks.eq((byte) 0);
+        VectorMask<Byte> wrong = clue.compare(VectorOperators.NE, count).and(full)
+                .or(clue.compare(VectorOperators.GT, empty.add(count)).andNot(full));
+        return !wrong.and(clue.compare(VectorOperators.NE, (byte) 0)).anyTrue();
+    }
+}
@@ -1,4 +1,8 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
 
 /**
  * This class represents the classic recursive backtracking algorithm.
@@ -7,10 +11,16 @@ import java.util.Optional;
  * 
  * @author RIT CS
  */
-public class Backtracker {
+public class Backtracker implements Solver {
     /** Should debug output be enabled */
     private boolean debug;
 
+    /** Where the search is recorded, null when it is not */
+    private SearchMetrics metrics;
+
+    /** Boards known to lead nowhere, null when they are not remembered */
+    private TranspositionTable table;
+
     /**
      * Initialize a new backtracker.
      * 
@@ -23,6 +33,27 @@ public class Backtracker {
         }
     }
     
+    /**
+     * Record every following search into a set of metrics.
+     *
+     * @param metrics the metrics to add to, or null to stop recording
+     */
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Remember the boards every following search proves have no solution
+     * below them, and skip them when they come up again.  Only used for
+     * configurations that implement HashedConfiguration.
+     *
+     * @param table the dead ends of the board being solved, or null to
+     *  stop remembering them
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+
     /**
      * A utility routine for printing out various debug messages.
      * 
@@ -30,28 +61,68 @@ public class Backtracker {
      *  successor, e.g.)
      * @param config The config to display
      */
-    private void debugPrint(String msg, Configuration config) {
+    private void debugPrint(String msg, Object config) {
         if (this.debug) {
             System.out.println(msg + ":\n" + config);
         }
     }
     
+    /**
+     * Stop the search when the thread running it has been interrupted,
+     * e.g. because the caller gave up waiting for it.
+     *
+     * @throws CancellationException if the current thread is interrupted
+     */
+    private void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Search interrupted");
+        }
+    }
+
     /**
      * Try find a solution, if one exists, for a given configuration.
      * 
      * @param config A valid configuration
      * @return A solution config, or null if no solution
+     * @throws CancellationException if the thread is interrupted during the search
      */
+    @Override
     public Optional<Configuration> solve(Configuration config) {
+        if (metrics != null) {
+            metrics.solve();
+        }
+        return solve(config, 0);
+    }
+
+    /**
+     * The recursive search below solve().
+     *
+     * @param config A valid configuration
+     * @param depth How many moves deep config is
+     * @return A solution config, or empty if no solution
+     */
+    private Optional<Configuration> solve(Configuration config, int depth) {
+        checkInterrupted();
         debugPrint("Current config", config);
-        if (config.isGoal()) {
+        if (metrics != null) {
+            metrics.node(depth);
+        }
+        if (isKnownDeadEnd(config)) {
+            debugPrint("\tKnown dead end", config);
+            return Optional.empty();
+        }
+        boolean searched = false;
+        if (isGoal(config)) {
             debugPrint("\tGoal config", config);
             return Optional.of(config);
         } else {
-            for (Configuration child : config.getSuccessors()) {
-                if (child.isValid()) {
+            // children are only built as the loop gets to them
+            Iterator<Configuration> children = successors(config);
+            for (Configuration child = nextChild(children); child != null; child = nextChild(children)) {
+                if (isValid(child)) {
                     debugPrint("\tValid successor", child);
-                    Optional<Configuration> sol = solve(child);
+                    searched = true;
+                    Optional<Configuration> sol = solve(child, depth + 1);
                     if (sol.isPresent()) {
                         return sol;
                     }
@@ -61,6 +132,218 @@ public class Backtracker {
             }
             // implicit backtracking happens here
         } 
+        deadEnd(config, searched);
         return Optional.empty();
     }
+
+    /**
+     * List the search frontier at a depth: the valid configurations
+     * solve() reaches that many moves below config, in the order it reaches
+     * them.  Searching each of them in turn is the same search as solve(),
+     * cut into pieces that can be handed out separately.  A goal above the
+     * depth ends the list, since the search would stop there.
+     *
+     * @param config A valid configuration
+     * @param depth How many moves down to list, 0 for just config
+     * @return The frontier, empty if the search ends above the depth with no solution
+     * @throws CancellationException if the thread is interrupted during the search
+     */
+    public List<Configuration> frontier(Configuration config, int depth) {
+        List<Configuration> frontier = new ArrayList<>();
+        frontier(config, depth, frontier);
+        return frontier;
+    }
+
+    /**
+     * The recursive walk below frontier().
+     *
+     * @return true once a goal has been listed
+     */
+    private boolean frontier(Configuration config, int depth, List<Configuration> frontier) {
+        checkInterrupted();
+        if (isGoal(config)) {
+            frontier.add(config);
+            return true;
+        }
+        if (depth == 0) {
+            frontier.add(config);
+            return false;
+        }
+        Iterator<Configuration> children = successors(config);
+        for (Configuration child = nextChild(children); child != null; child = nextChild(children)) {
+            if (isValid(child) && frontier(child, depth - 1, frontier)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Try find a solution, if one exists, by changing a single board in
+     * place.  Each value is placed, checked and searched below, then the
+     * move is undone, so no configurations are created during the search.
+     *
+     * @param config A valid configuration, left as the solution if one is found
+     * @return true if a solution was found, false otherwise
+     * @throws CancellationException if the thread is interrupted during the search
+     */
+    public boolean solveInPlace(MutableConfiguration config) {
+        if (metrics != null) {
+            metrics.solve();
+        }
+        return solveInPlace(config, 0);
+    }
+
+    /**
+     * The recursive search below solveInPlace().
+     *
+     * @param config A valid configuration
+     * @param depth How many moves deep config is
+     * @return true if a solution was found, false otherwise
+     */
+    private boolean solveInPlace(MutableConfiguration config, int depth) {
+        checkInterrupted();
+        debugPrint("Current config", config);
+        if (metrics != null) {
+            metrics.node(depth);
+        }
+        if (isKnownDeadEnd(config)) {
+            debugPrint("\tKnown dead end", config);
+            return false;
+        }
+        if (isGoal(config)) {
+            debugPrint("\tGoal config", config);
+            return true;
+        }
+        boolean searched = false;
+        int cell = config.nextCell();
+        for (int left = config.candidates(cell); left != 0; left &= left - 1) {
+            makeMove(config, cell, Integer.numberOfTrailingZeros(left) + 1);
+            if (isValid(config)) {
+                debugPrint("\tValid successor", config);
+                searched = true;
+                if (solveInPlace(config, depth + 1)) {
+                    return true;
+                }
+            } else {
+                debugPrint("\tInvalid successor", config);
+            }
+            config.undoMove();
+        }
+        // explicit backtracking happens in undoMove
+        deadEnd(config, searched);
+        return false;
+    }
+
+    /**
+     * Has this board already been proven to have no solution below it?
+     *
+     * @param config the board about to be expanded
+     * @return true if the transposition table has it as a dead end
+     */
+    private boolean isKnownDeadEnd(Object config) {
+        if (table != null && config instanceof HashedConfiguration
+                && table.isDeadEnd(((HashedConfiguration) config).getHash())) {
+            if (metrics != null) {
+                metrics.backtrack();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record that the search below a board found no solution.  Boards
+     * without a single valid successor are cheaper to expand again than to
+     * remember, so only deeper dead ends go in the transposition table.
+     *
+     * @param config the board whose successors all failed
+     * @param searched was any successor valid and searched?
+     */
+    private void deadEnd(Object config, boolean searched) {
+        if (metrics != null) {
+            metrics.backtrack();
+        }
+        if (searched && table != null && config instanceof HashedConfiguration) {
+            table.storeDeadEnd(((HashedConfiguration) config).getHash());
+        }
+    }
+
+    /*
+     * The calls below are timed when metrics are being recorded.
+     */
+
+    private Iterator<Configuration> successors(Configuration config) {
+        if (metrics == null) {
+            return config.successors();
+        }
+        long start = System.nanoTime();
+        Iterator<Configuration> children = config.successors();
+        metrics.generated(0, System.nanoTime() - start);
+        return children;
+    }
+
+    private Configuration nextChild(Iterator<Configuration> children) {
+        if (metrics == null) {
+            return children.hasNext() ? children.next() : null;
+        }
+        long start = System.nanoTime();
+        if (!children.hasNext()) {
+            metrics.generated(0, System.nanoTime() - start);
+            return null;
+        }
+        Configuration child = children.next();
+        metrics.generated(1, System.nanoTime() - start);
+        return child;
+    }
+
+    private void makeMove(MutableConfiguration config, int cell, int value) {
+        if (metrics == null) {
+            config.makeMove(cell, value);
+            return;
+        }
+        long start = System.nanoTime();
+        config.makeMove(cell, value);
+        metrics.generated(1, System.nanoTime() - start);
+    }
+
+    private boolean isValid(Configuration config) {
+        if (metrics == null) {
+            return config.isValid();
+        }
+        long start = System.nanoTime();
+        boolean valid = config.isValid();
+        metrics.validated(valid, System.nanoTime() - start);
+        return valid;
+    }
+
+    private boolean isValid(MutableConfiguration config) {
+        if (metrics == null) {
+            return config.isValid();
+        }
+        long start = System.nanoTime();
+        boolean valid = config.isValid();
+        metrics.validated(valid, System.nanoTime() - start);
+        return valid;
+    }
+
+    private boolean isGoal(Configuration config) {
+        if (metrics == null) {
+            return config.isGoal();
+        }
+        long start = System.nanoTime();
+        boolean goal = config.isGoal();
+        metrics.goalChecked(System.nanoTime() - start);
+        return goal;
+    }
+
+    private boolean isGoal(MutableConfiguration config) {
+        if (metrics == null) {
+            return config.isGoal();
+        }
+        long start = System.nanoTime();
+        boolean goal = config.isGoal();
+        metrics.goalChecked(System.nanoTime() - start);
+        return goal;
+    }
 }
@@ -0,0 +1,639 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Solves a whole set of board files concurrently.  The BatchSolver class is
+ * run as:
+ *  $java BatchSolver [boards] [engine] [options...]
+ *       [boards]: a directory (every .txt file in it), a manifest file
+ *                 listing one board file per line (relative to the manifest,
+ *                 blank lines and lines starting with # are skipped), or a
+ *                 .txt file holding one or more boards back to back
+ *       [engine]: which configuration to search with, as for Skyscraper
+ *       [options]: any Skyscraper option, plus
+ *                 workers=N   - threads solving boards (default: all cores)
+ *                 timeout=MS  - give up on a board after this long (default: none)
+ *                 slice=MS    - search each board for at most this long at a time and then
+ *                               put it back in the queue, so the workers take turns between
+ *                               every board being solved and a long board can not hold a
+ *                               worker up; only for in place boards (default: off)
+ *                 stats=FILE  - also write the summary to FILE
+ *                 print       - print each solution, not just its status
+ *                 compact     - print one tab separated line per board instead: the board,
+ *                               its status, the solve time in ns and the solution as
+ *                               RenderableConfiguration.renderCompact() writes it (- if
+ *                               there is none); the summary goes to standard error
+ *                 metrics     - record each board's search (as for Skyscraper), print
+ *                               it with the board and the totals with the summary; the
+ *                               totals are also published over JMX while the batch runs
+ *
+ * Board files are read on their own threads (virtual threads when the JVM
+ * has them) and solved on a fixed pool of platform threads.  Results are
+ * printed as each board finishes, followed by throughput and solve latency
+ * percentiles for the whole batch.
+ *
+ * @author Blake Batson
+ */
+public class BatchSolver {
+    /** How one board ended */
+    public enum Status { SOLVED, NO_SOLUTION, TIMED_OUT, CANCELLED, ERROR }
+
+    /**
+     * The outcome of one board.
+     */
+    public static class BoardResult {
+        /** The board file */
+        public final Path file;
+        /** How the board ended */
+        public final Status status;
+        /** The solution, null unless SOLVED */
+        public final Configuration solution;
+        /** Time spent searching, in nanoseconds */
+        public final long solveNanos;
+        /** What went wrong, null unless ERROR */
+        public final Throwable error;
+        /** What the search did, null unless metrics were asked for */
+        public final SearchMetrics metrics;
+
+        BoardResult(Path file, Status status, Configuration solution, long solveNanos, Throwable error) {
+            this(file, status, solution, solveNanos, error, null);
+        }
+
+        BoardResult(Path file, Status status, Configuration solution, long solveNanos, Throwable error,
+                SearchMetrics metrics) {
+            this.file = file;
+            this.status = status;
+            this.solution = solution;
+            this.solveNanos = solveNanos;
+            this.error = error;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public String toString() {
+            String line = status + " " + file + " " + String.format("%.3f", solveNanos / 1e6) + " ms";
+            if (metrics != null) {
+                line += " " + metrics.toJson();
+            }
+            return error == null ? line : line + " " + error;
+        }
+
+        /**
+         * Write the result as one tab separated line for other programs to
+         * read: the board, the status, the solve time in nanoseconds and
+         * the solution in the compact form, or - if there is none.
+         *
+         * @param out where to write, no line separator is added
+         * @throws IOException if out can not be written
+         */
+        public void renderCompact(Appendable out) throws IOException {
+            out.append(file.toString()).append('\t').append(status.name()).append('\t')
+                    .append(Long.toString(solveNanos)).append('\t');
+            if (solution == null) {
+                out.append('-');
+            } else {
+                Skyscraper.print(out, solution, true);
+            }
+        }
+    }
+
+    /** Boards read but not finished yet, per worker, before reading waits */
+    private static final int QUEUED_PER_WORKER = 4;
+
+    private final String engine;
+    private final List<String> options;
+    private final long timeoutMillis;
+    private long sliceNanos;
+    private final ExecutorService io;
+    private final ExecutorService cpu;
+    private final ScheduledExecutorService timer;
+    private final Semaphore inFlight;
+    private final SearchMetrics totals;
+    private volatile boolean cancelled;
+
+    /**
+     * Initialize a new batch solver.
+     *
+     * @param engine which configuration to search with, as for Skyscraper
+     * @param options the Skyscraper search options
+     * @param workers how many boards are solved at once
+     * @param timeoutMillis how long one board may search, 0 for no limit
+     */
+    public BatchSolver(String engine, List<String> options, int workers, long timeoutMillis) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be at least 1: " + workers);
+        }
+        this.engine = engine;
+        this.options = options;
+        this.timeoutMillis = timeoutMillis;
+        this.io = ioExecutor();
+        this.cpu = Executors.newFixedThreadPool(workers);
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batch-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.inFlight = new Semaphore(workers * QUEUED_PER_WORKER);
+        this.totals = options.contains("metrics") ? new SearchMetrics() : null;
+    }
+
+    /**
+     * The search metrics of every board solved so far.
+     *
+     * @return the running totals, or null unless the metrics option was given
+     */
+    public SearchMetrics getTotals() {
+        return totals;
+    }
+
+    /**
+     * Take turns between boards instead of solving each one straight
+     * through.  A board searched in place is searched for one slice by
+     * whichever worker is free, then queued again behind the boards
+     * waiting for a worker; its search stack is kept in between, so no
+     * work is lost.  The timeout still counts from when a worker first
+     * picks the board up.
+     *
+     * @param sliceMillis how long a board is searched at a time, 0 to
+     *  solve each board straight through
+     */
+    public void setSlice(long sliceMillis) {
+        this.sliceNanos = TimeUnit.MILLISECONDS.toNanos(sliceMillis);
+    }
+
+    /**
+     * Virtual threads for reading files when the JVM has them (Java 21+),
+     * otherwise a cached pool of daemon platform threads.
+     *
+     * @return an executor that starts a thread per task
+     */
+    static ExecutorService ioExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "batch-io");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Solve every board, handing each result to a consumer as soon as the
+     * board is done.  The consumer is called from the solving threads, one
+     * call at a time.
+     *
+     * @param boards the board files
+     * @param results receives each result as its board finishes
+     * @return every result, in the order the boards finished
+     * @throws InterruptedException if interrupted while waiting for the boards
+     */
+    public List<BoardResult> solveAll(List<Path> boards, Consumer<BoardResult> results)
+            throws InterruptedException {
+        List<BoardResult> finished = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (Path board : boards) {
+            inFlight.acquire();
+            if (cancelled) {
+                inFlight.release();
+                break;
+            }
+            pending.add(track(board, CompletableFuture.supplyAsync(() -> read(board), io), finished, results));
+        }
+        for (CompletableFuture<Void> future : pending) {
+            future.join();
+        }
+        return new ArrayList<>(finished);
+    }
+
+    /**
+     * Solve every board of a file that holds several boards back to back.
+     * The file is read once, memory-mapped if it is large, and each board
+     * is named after the file and its position in it, e.g. boards.txt#3.
+     * A malformed board is reported as an error and ends the file, since
+     * where the next board starts can not be known.
+     *
+     * @param file the board file
+     * @param results receives each result as its board finishes
+     * @return every result, in the order the boards finished
+     * @throws IOException if the file can not be read
+     * @throws InterruptedException if interrupted while waiting for the boards
+     */
+    public List<BoardResult> solveFile(Path file, Consumer<BoardResult> results)
+            throws IOException, InterruptedException {
+        BoardReader reader = new BoardReader(file);
+        List<BoardResult> finished = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        boolean malformed = false;
+        while (!malformed && reader.hasNext()) {
+            inFlight.acquire();
+            if (cancelled) {
+                inFlight.release();
+                break;
+            }
+            Path board = Paths.get(file + "#" + (reader.getBoardCount() + 1));
+            CompletableFuture<Configuration> config;
+            try {
+                SkyscraperConfig initial = reader.next();
+                config = CompletableFuture.supplyAsync(() -> Skyscraper.forEngine(initial, engine, options), io);
+            } catch (IllegalArgumentException e) {
+                config = CompletableFuture.failedFuture(e);
+                malformed = true;
+            }
+            pending.add(track(board, config, finished, results));
+        }
+        for (CompletableFuture<Void> future : pending) {
+            future.join();
+        }
+        return new ArrayList<>(finished);
+    }
+
+    /**
+     * Solve a board once it has been read and report how it ended.
+     *
+     * @param board the board's name
+     * @param config completes with the board, set up for the engine
+     * @param finished the results so far, added to as the board finishes
+     * @param results receives the result as the board finishes
+     * @return completes once the result has been handed over
+     */
+    private CompletableFuture<Void> track(Path board, CompletableFuture<Configuration> config,
+            List<BoardResult> finished, Consumer<BoardResult> results) {
+        return config.thenCompose(initial -> solveAsync(board, initial))
+                .exceptionally(e -> failed(board, e))
+                .thenAccept(result -> {
+                    try {
+                        synchronized (finished) {
+                            finished.add(result);
+                            results.accept(result);
+                        }
+                    } finally {
+                        // a consumer that throws must not leave the reader waiting for a permit
+                        inFlight.release();
+                    }
+                });
+    }
+
+    /**
+     * Stop the batch: boards not started are skipped and running searches
+     * are interrupted.
+     */
+    public void cancel() {
+        cancelled = true;
+        // boards still queued see the flag and finish as cancelled right away
+        for (Runnable queued : cpu.shutdownNow()) {
+            queued.run();
+        }
+    }
+
+    /**
+     * Release the worker threads.
+     */
+    public void shutdown() {
+        cpu.shutdownNow();
+        io.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    /**
+     * Read one board for the engine.
+     */
+    private Configuration read(Path board) {
+        try {
+            return Skyscraper.readBoard(board.toString(), engine, options);
+        } catch (FileNotFoundException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Turn an exception from reading or solving into a result.
+     */
+    private BoardResult failed(Path board, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof CancellationException) {
+            return new BoardResult(board, Status.CANCELLED, null, 0, null);
+        }
+        return new BoardResult(board, Status.ERROR, null, 0, cause);
+    }
+
+    /**
+     * Solve one board on the worker pool.  The timeout starts when a worker
+     * picks the board up and interrupts that worker if it fires first; the
+     * search notices the interrupt and stops.
+     */
+    private CompletableFuture<BoardResult> solveAsync(Path board, Configuration config) {
+        CompletableFuture<BoardResult> result = new CompletableFuture<>();
+        if (sliceNanos > 0 && config instanceof MutableConfiguration) {
+            IterativeBacktracker search = new IterativeBacktracker((MutableConfiguration) config);
+            SearchMetrics metrics = totals != null ? new SearchMetrics() : null;
+            search.setMetrics(metrics);
+            search.setTranspositionTable(Skyscraper.transpositionTable(options));
+            queueSlice(board, search, metrics, new long[2], result);
+            return result;
+        }
+        Runnable task = () -> {
+            if (cancelled) {
+                result.complete(new BoardResult(board, Status.CANCELLED, null, 0, null));
+                return;
+            }
+            Thread worker = Thread.currentThread();
+            Object lock = new Object();
+            boolean[] running = {true};
+            boolean[] expired = {false};
+            ScheduledFuture<?> alarm = null;
+            if (timeoutMillis > 0) {
+                alarm = timer.schedule(() -> {
+                    synchronized (lock) {
+                        if (running[0]) {
+                            expired[0] = true;
+                            worker.interrupt();
+                        }
+                    }
+                }, timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+
+            SearchMetrics metrics = totals != null ? new SearchMetrics() : null;
+            long start = System.nanoTime();
+            BoardResult outcome;
+            try {
+                Optional<Configuration> solution = Skyscraper.solve(config, options, false, metrics);
+                outcome = new BoardResult(board, solution.isPresent() ? Status.SOLVED : Status.NO_SOLUTION,
+                        solution.orElse(null), System.nanoTime() - start, null, metrics);
+            } catch (CancellationException e) {
+                outcome = new BoardResult(board, expired[0] ? Status.TIMED_OUT : Status.CANCELLED,
+                        null, System.nanoTime() - start, null, metrics);
+            } catch (RuntimeException | StackOverflowError e) {
+                outcome = new BoardResult(board, Status.ERROR, null, System.nanoTime() - start, e, metrics);
+            }
+            if (metrics != null) {
+                totals.add(metrics);
+            }
+
+            // make sure a late alarm can not interrupt the worker's next board
+            synchronized (lock) {
+                running[0] = false;
+            }
+            if (alarm != null) {
+                alarm.cancel(false);
+            }
+            Thread.interrupted();
+            result.complete(outcome);
+        };
+        try {
+            cpu.execute(task);
+        } catch (RejectedExecutionException e) {
+            result.complete(new BoardResult(board, Status.CANCELLED, null, 0, null));
+        }
+        return result;
+    }
+
+    /**
+     * Queue one slice of a board's search on the worker pool.  The slice
+     * queues the next one when the search is not finished yet.
+     *
+     * @param times when a worker first picked the board up and how long it
+     *  has been searched so far, in nanoseconds
+     */
+    private void queueSlice(Path board, IterativeBacktracker search, SearchMetrics metrics, long[] times,
+            CompletableFuture<BoardResult> result) {
+        Runnable slice = () -> {
+            if (cancelled) {
+                finish(result, new BoardResult(board, Status.CANCELLED, null, times[1], null, metrics));
+                return;
+            }
+            long start = System.nanoTime();
+            if (times[0] == 0) {
+                times[0] = start;
+            }
+            IterativeBacktracker.State state;
+            try {
+                state = search.runFor(sliceNanos);
+            } catch (CancellationException e) {
+                finish(result, new BoardResult(board, Status.CANCELLED, null, times[1], null, metrics));
+                return;
+            } catch (RuntimeException | StackOverflowError e) {
+                finish(result, new BoardResult(board, Status.ERROR, null, times[1], e, metrics));
+                return;
+            }
+            long end = System.nanoTime();
+            times[1] += end - start;
+
+            if (state == IterativeBacktracker.State.SEARCHING) {
+                if (timeoutMillis > 0 && end - times[0] >= TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+                    finish(result, new BoardResult(board, Status.TIMED_OUT, null, times[1], null, metrics));
+                } else {
+                    queueSlice(board, search, metrics, times, result);
+                }
+                return;
+            }
+            Configuration solution = (Configuration) search.getBoard();
+            finish(result, state == IterativeBacktracker.State.SOLVED
+                    ? new BoardResult(board, Status.SOLVED, solution, times[1], null, metrics)
+                    : new BoardResult(board, Status.NO_SOLUTION, null, times[1], null, metrics));
+        };
+        try {
+            cpu.execute(slice);
+        } catch (RejectedExecutionException e) {
+            finish(result, new BoardResult(board, Status.CANCELLED, null, times[1], null, metrics));
+        }
+    }
+
+    /**
+     * Hand over the result of a sliced board, adding its metrics to the totals.
+     */
+    private void finish(CompletableFuture<BoardResult> result, BoardResult outcome) {
+        if (outcome.metrics != null) {
+            totals.add(outcome.metrics);
+        }
+        result.complete(outcome);
+    }
+
+    /**
+     * List the boards named by a directory or a manifest file.
+     *
+     * @param source a directory of .txt boards, or a manifest of board paths
+     * @return the board files, directories in name order
+     * @throws IOException if the directory or manifest can not be read
+     */
+    public static List<Path> listBoards(Path source) throws IOException {
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.list(source)) {
+                return files.filter(file -> file.toString().endsWith(".txt"))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+        Path base = source.toAbsolutePath().getParent();
+        List<Path> boards = new ArrayList<>();
+        for (String line : Files.readAllLines(source)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                boards.add(base.resolve(line).normalize());
+            }
+        }
+        return boards;
+    }
+
+    /**
+     * Summarize a finished batch.
+     *
+     * @param results every board's result
+     * @param wallNanos how long the whole batch took
+     * @return boards per second and solve latency percentiles
+     */
+    public static String summary(List<BoardResult> results, long wallNanos) {
+        int[] counts = new int[Status.values().length];
+        long[] latencies = new long[results.size()];
+        int solved = 0;
+        for (BoardResult result : results) {
+            counts[result.status.ordinal()]++;
+            if (result.status == Status.SOLVED || result.status == Status.NO_SOLUTION) {
+                latencies[solved++] = result.solveNanos;
+            }
+        }
+        Arrays.sort(latencies, 0, solved);
+
+        StringBuilder out = new StringBuilder();
+        out.append("Boards: ").append(results.size());
+        for (Status status : Status.values()) {
+            out.append(", ").append(status.name().toLowerCase()).append(' ').append(counts[status.ordinal()]);
+        }
+        out.append(String.format("%nWall time: %.3f seconds", wallNanos / 1e9));
+        out.append(String.format("%nThroughput: %.1f boards/sec", results.size() / (wallNanos / 1e9)));
+        out.append(String.format("%nSolve latency: p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                percentile(latencies, solved, 50) / 1e6, percentile(latencies, solved, 99) / 1e6,
+                solved == 0 ? 0 : latencies[solved - 1] / 1e6));
+        return out.toString();
+    }
+
+    /**
+     * Nearest-rank percentile of the first n sorted values.
+     */
+    private static long percentile(long[] sorted, int n, int percent) {
+        if (n == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * n);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * The main program.
+     * @param args command line arguments
+     * @throws Exception if the boards can not be listed or the batch is interrupted
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: java BatchSolver boards engine [options...]");
+            return;
+        }
+        List<String> options = Arrays.asList(args).subList(2, args.length);
+        int workers = Runtime.getRuntime().availableProcessors();
+        long timeout = 0;
+        long slice = 0;
+        String statsFile = null;
+        for (String option : options) {
+            if (option.startsWith("workers=")) {
+                workers = Integer.parseInt(option.substring("workers=".length()));
+            } else if (option.startsWith("timeout=")) {
+                timeout = Long.parseLong(option.substring("timeout=".length()));
+            } else if (option.startsWith("slice=")) {
+                slice = Long.parseLong(option.substring("slice=".length()));
+            } else if (option.startsWith("stats=")) {
+                statsFile = option.substring("stats=".length());
+            }
+        }
+        boolean print = options.contains("print");
+        boolean compact = options.contains("compact");
+        // results are printed by whichever worker finishes them, through one buffer that is
+        // flushed per board unless the output is compact, which is meant for pipes
+        Writer output = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+
+        Path source = Paths.get(args[0]);
+        BatchSolver batch = new BatchSolver(args[1], options, workers, timeout);
+        batch.setSlice(slice);
+        if (batch.getTotals() != null) {
+            batch.getTotals().register("skyscraper:type=SearchMetrics,name=BatchSolver");
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(batch::cancel));
+
+        long start = System.nanoTime();
+        List<BoardResult> results;
+        try {
+            Consumer<BoardResult> report = result -> {
+                try {
+                    if (compact) {
+                        result.renderCompact(output);
+                    } else {
+                        output.write(result.toString());
+                        if (print && result.solution != null) {
+                            output.write(System.lineSeparator());
+                            Skyscraper.print(output, result.solution, false);
+                        }
+                    }
+                    output.write(System.lineSeparator());
+                    if (!compact) {
+                        output.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            if (Files.isRegularFile(source) && source.toString().endsWith(".txt")) {
+                results = batch.solveFile(source, report);
+            } else {
+                results = batch.solveAll(listBoards(source), report);
+            }
+        } finally {
+            batch.shutdown();
+            output.flush();
+        }
+        String summary = summary(results, System.nanoTime() - start);
+        if (batch.getTotals() != null) {
+            summary += System.lineSeparator() + "Search metrics: " + batch.getTotals().toJson();
+        }
+        (compact ? System.err : System.out).println(summary);
+        if (statsFile != null) {
+            try (PrintWriter out = new PrintWriter(new File(statsFile))) {
+                if (batch.getTotals() != null) {
+                    // per board metrics show which boards are the expensive ones
+                    for (BoardResult result : results) {
+                        out.println(result);
+                    }
+                }
+                out.println(summary);
+            }
+        }
+    }
+}
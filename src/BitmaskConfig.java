@@ -0,0 +1,950 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A skyscraper configuration that keeps the board as bitmasks.
+ * Every cell has a mask of the values it can still take and every row
+ * and column has a mask of the values already used in it, so listing the
+ * candidates of a cell and applying a placement are a few bit operations
+ * instead of a rescan of the row and column.
+ *
+ * Value v is stored as bit (v - 1).  The whole mutable state lives in one
+ * int array so a child is a single array clone.
+ *
+ * By default cells are filled in the same order and values are tried in
+ * the same order as SkyscraperConfig, so the Backtracker finds the same
+ * solution.  A CellSelector can pick a different cell to branch on.
+ *
+ * With incremental validation on, a child whose parent was valid only
+ * rechecks the four clue lines through the cell it placed (about 4 * size
+ * cells) instead of all 4 * size lines (about 4 * size * size cells).
+ * When propagation fills more cells, their lines are rechecked as well.
+ *
+ * With propagation on, every cell's domain is first cut down by the
+ * distance to each border (for clue c, the cell d steps in can hold at
+ * most size - c + d + 1), and then before the search and after every
+ * placement these rules run until none of them changes anything:
+ *  - naked single: a cell with one candidate left gets that value
+ *  - hidden single: a value that fits only one cell of a row or column goes there
+ *  - line check: candidates that are not part of any way to finish a line
+ *    that satisfies both of its borders are removed (for lines that have
+ *    few enough ways left to enumerate)
+ *
+ * Any board can also be searched in place through MutableConfiguration.
+ * Every write to the state array is then recorded on a trail of
+ * (index, old value) pairs and undoMove() pops the trail back to where the
+ * move started, so the whole search reuses the arrays the first makeMove()
+ * allocates.  Copies made by getSuccessors() start without a trail, but
+ * share the scratch arrays of the line check with the board they were
+ * copied from, as long as they are built on the same thread.
+ *
+ * @author Blake Batson
+ */
+public class BitmaskConfig implements Configuration, MutableConfiguration, HashedConfiguration,
+        RenderableConfiguration
+{
+    private final int size;         //The length of each side of the grid
+    private final int cells;        //Number of cells in the grid (size * size)
+    private final int full;         //Mask with a bit set for every value 1..size
+    private final int[][] borders;  //Border arrays, shared by every copy, same order as SkyscraperConfig
+
+    //Offsets of each section inside of the state array
+    private final int domainAt;     //Per cell mask of the values the cell may take
+    private final int rowAt;        //Per row mask of the values used in that row
+    private final int colAt;        //Per column mask of the values used in that column
+    private final int emptyAt;      //Number of empty cells left
+
+    private final int[] state;      //grid | domain | row used | column used | empty count
+    private final long[] keys;      //Zobrist keys for this grid size, shared by every copy
+    private long hash;              //Zobrist hash of the grid part of the state
+
+    //Lines are only run through the exact line check when they have at most this many ways to fill them
+    private final static int LINE_LIMIT = 1024;
+    //Lines too long for LinePermutations are searched anyway, giving up after this many steps
+    private final static int LINE_BUDGET = 1 << 16;
+    //Partial lines remembered by one line search, fewer when LinePermutations takes the long lines
+    private final static int LINE_MEMO = 1 << 13;
+    private final static int SHORT_LINE_MEMO = 1 << 10;
+
+    private final boolean incremental;  //Only recheck the changed lines when the parent was valid
+    private int dirtyRows;              //Rows changed since the parent, as a bitmask
+    private int dirtyCols;              //Columns changed since the parent, as a bitmask
+    private boolean parentValid;        //Did the parent pass isValid()
+    private boolean valid;              //Did this config pass its last isValid()
+
+    private CellSelector selector;      //Picks the cell to branch on, shared by every config of a search
+
+    private boolean propagate;          //Run propagation after every placement
+    private boolean dead;               //Propagation found a cell or line that can not be filled
+    private LongAdder forced;           //Cells filled by propagation, shared by every config of a search
+    private LineScratch lineScratch;    //Holds the line check arrays below, shared by copies made on its thread
+    private int[] lineCells;            //Scratch for the line check: grid index of each cell of the line
+    private int[] lineCand;             //Scratch for the line check: candidates, 0 for a filled cell
+    private int[] lineValue;            //Scratch for the line check: the value tried in each cell
+    private int[] lineSupport;          //Scratch for the line check: values seen in some completion
+    private boolean lineSupported;      //Scratch for the line check: did any completion match the borders
+    private boolean lineDone;           //Scratch for the line check: every candidate is supported, stop
+    private int lineBudget;             //Scratch for the line check: steps left before giving up
+    private long[] lineMemo;            //Scratch for the line check: partial lines already searched
+    private int lineMemoSize;           //Scratch for the line check: entries used in lineMemo
+    private int lineGeneration;         //Scratch for the line check: tags the lineMemo entries of this check
+    private int[] lineChecked;          //Per line, what it looked like when propagate() last found nothing to remove
+
+    //Undo information for in place search, null on copies
+    private int[] trail;                //(state index, old value) pairs in the order they were written
+    private int top;                    //Next free slot of the trail
+    private int[] frames;               //Per move: trail position, dirtyRows, dirtyCols and flags before it
+    private long[] hashes;              //Per move: the hash before it
+    private int depth;                  //Number of moves not undone yet
+
+    /**
+     * Read a board file into a bitmask configuration
+     *
+     * @param filename the filename, same format as SkyscraperConfig
+     * @throws FileNotFoundException if file not found
+     */
+    public BitmaskConfig(String filename) throws FileNotFoundException
+    {
+        this(new SkyscraperConfig(filename), false);
+    }
+
+    /**
+     * Read a board file into a bitmask configuration
+     *
+     * @param filename the filename, same format as SkyscraperConfig
+     * @param incremental only recheck the lines through the placed cell
+     * @throws FileNotFoundException if file not found
+     */
+    public BitmaskConfig(String filename, boolean incremental) throws FileNotFoundException
+    {
+        this(new SkyscraperConfig(filename), incremental);
+    }
+
+    /**
+     * Build a bitmask configuration from a SkyscraperConfig
+     *
+     * @param config the configuration to convert
+     */
+    public BitmaskConfig(SkyscraperConfig config)
+    {
+        this(config, false);
+    }
+
+    /**
+     * Build a bitmask configuration from a SkyscraperConfig
+     *
+     * @param config the configuration to convert
+     * @param incremental only recheck the lines through the placed cell
+     */
+    public BitmaskConfig(SkyscraperConfig config, boolean incremental)
+    {
+        this.incremental = incremental;
+        this.parentValid = false;
+        this.size = config.getSize();
+        this.cells = size * size;
+        this.full = (1 << size) - 1;
+        this.borders = config.getBorders();
+        this.domainAt = cells;
+        this.rowAt = 2 * cells;
+        this.colAt = 2 * cells + size;
+        this.emptyAt = 2 * cells + 2 * size;
+        this.state = new int[2 * cells + 2 * size + 1];
+        this.keys = Zobrist.keys(size);
+        this.selector = RowMajorSelector.INSTANCE;
+
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                int value = config.getCell(y, x);
+                int at = y * size + x;
+                state[at] = value;
+                if (value == SkyscraperConfig.EMPTY)
+                {
+                    state[domainAt + at] = full;
+                    state[emptyAt]++;
+                }
+                else
+                {
+                    //A value already in the row or column leaves nothing to search
+                    if (((state[rowAt + y] | state[colAt + x]) & bit(value)) != 0)
+                        dead = true;
+                    state[domainAt + at] = bit(value);
+                    state[rowAt + y] |= bit(value);
+                    state[colAt + x] |= bit(value);
+                    hash ^= keys[at * size + value - 1];
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy constructor, then place a value in an empty cell
+     *
+     * @param copy BitmaskConfig instance
+     * @param cell a cell index (y * size + x)
+     * @param value a value 1..size
+     */
+    private BitmaskConfig(BitmaskConfig copy, int cell, int value)
+    {
+        this.incremental = copy.incremental;
+        this.parentValid = copy.valid;
+        this.propagate = copy.propagate;
+        this.forced = copy.forced;
+        this.size = copy.size;
+        this.cells = copy.cells;
+        this.full = copy.full;
+        this.borders = copy.borders;
+        this.domainAt = copy.domainAt;
+        this.rowAt = copy.rowAt;
+        this.colAt = copy.colAt;
+        this.emptyAt = copy.emptyAt;
+        this.selector = copy.selector;
+        this.lineScratch = copy.lineScratch;
+        this.state = copy.state.clone();
+        this.keys = copy.keys;
+        this.hash = copy.hash;
+        place(cell, value);
+        if (propagate)
+            dead = !propagate();
+    }
+
+    /**
+     * @param value a value 1..size
+     * @return the bit representing value
+     */
+    private static int bit(int value)
+    {
+        return 1 << (value - 1);
+    }
+
+    /**
+     * @param cell a cell index (y * size + x)
+     * @return the mask of values that can still be placed in cell
+     */
+    @Override
+    public int candidates(int cell)
+    {
+        if (dead)
+            return 0;
+        int y = cell / size;
+        int x = cell % size;
+        return state[domainAt + cell] & ~(state[rowAt + y] | state[colAt + x]);
+    }
+
+    /**
+     * Place a value in an empty cell and mark it used in its row and column
+     *
+     * @param cell a cell index (y * size + x)
+     * @param value a value 1..size
+     */
+    private void place(int cell, int value)
+    {
+        dirtyRows |= 1 << (cell / size);
+        dirtyCols |= 1 << (cell % size);
+        set(cell, value);
+        hash ^= keys[cell * size + value - 1];
+        set(rowAt + cell / size, state[rowAt + cell / size] | bit(value));
+        set(colAt + cell % size, state[colAt + cell % size] | bit(value));
+        set(emptyAt, state[emptyAt] - 1);
+    }
+
+    /**
+     * Write one entry of the state array, recording the old value on the
+     * trail when this board is being searched in place
+     *
+     * @param at the index into the state array
+     * @param value the new value
+     */
+    private void set(int at, int value)
+    {
+        if (trail != null)
+        {
+            if (top == trail.length)
+                trail = Arrays.copyOf(trail, 2 * trail.length);
+            trail[top] = at;
+            trail[top + 1] = state[at];
+            top += 2;
+        }
+        state[at] = value;
+    }
+
+    @Override
+    public int nextCell()
+    {
+        return state[emptyAt] == 0 ? -1 : selector.select(this);
+    }
+
+    @Override
+    public void makeMove(int cell, int value)
+    {
+        if (trail == null)
+        {
+            //A move writes the cell, its row mask and its column mask, propagation
+            //can write more and grows the trail
+            trail = new int[2 * 3 * cells];
+            frames = new int[4 * cells];
+            hashes = new long[cells];
+        }
+        hashes[depth] = hash;
+        frames[4 * depth] = top;
+        frames[4 * depth + 1] = dirtyRows;
+        frames[4 * depth + 2] = dirtyCols;
+        frames[4 * depth + 3] = (parentValid ? 1 : 0) | (valid ? 2 : 0) | (dead ? 4 : 0);
+        depth++;
+
+        parentValid = valid;
+        dirtyRows = 0;
+        dirtyCols = 0;
+        place(cell, value);
+        if (propagate)
+            dead = !propagate();
+    }
+
+    @Override
+    public void undoMove()
+    {
+        depth--;
+        while (top > frames[4 * depth])
+        {
+            top -= 2;
+            state[trail[top]] = trail[top + 1];
+        }
+        dirtyRows = frames[4 * depth + 1];
+        dirtyCols = frames[4 * depth + 2];
+        int flags = frames[4 * depth + 3];
+        parentValid = (flags & 1) != 0;
+        valid = (flags & 2) != 0;
+        dead = (flags & 4) != 0;
+        hash = hashes[depth];
+    }
+
+    @Override
+    public long getHash()
+    {
+        return hash;
+    }
+
+    /**
+     * Choose how the cell to branch on is picked, for this board and every
+     * config made from it.  The default is RowMajorSelector, the same order
+     * as SkyscraperConfig.
+     *
+     * @param selector the cell selection strategy
+     */
+    public void setCellSelector(CellSelector selector)
+    {
+        this.selector = selector;
+    }
+
+    /**
+     * @return the length of each side of the grid
+     */
+    int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return the border arrays in NORTH, EAST, SOUTH, WEST order (not a copy)
+     */
+    int[][] getBorders()
+    {
+        return borders;
+    }
+
+    /**
+     * @param cell a cell index (y * size + x)
+     * @return true if the cell has no value yet
+     */
+    boolean isEmpty(int cell)
+    {
+        return state[cell] == SkyscraperConfig.EMPTY;
+    }
+
+    /**
+     * @return how many cells have no value yet
+     */
+    int emptyCount()
+    {
+        return state[emptyAt];
+    }
+
+    /**
+     * @param y the row
+     * @return how many cells of the row have no value yet
+     */
+    int emptyInRow(int y)
+    {
+        return size - Integer.bitCount(state[rowAt + y]);
+    }
+
+    /**
+     * @param x the column
+     * @return how many cells of the column have no value yet
+     */
+    int emptyInColumn(int x)
+    {
+        return size - Integer.bitCount(state[colAt + x]);
+    }
+
+    @Override
+    public boolean isGoal()
+    {
+        //If its valid and theres no free space its the goal
+        return isValid() && state[emptyAt] == 0;
+    }
+
+    /**
+     * getSuccessors
+     *
+     * @return one child for every value still allowed in the first free cell
+     */
+    @Override
+    public Collection<Configuration> getSuccessors()
+    {
+        ArrayList<Configuration> children = new ArrayList<>(size);
+        successorSpliterator().forEachRemaining(children::add);
+        return children;
+    }
+
+    /**
+     * The successors in getSuccessors() order, each one copied only when
+     * the search asks for it
+     *
+     * @return a spliterator over one child per candidate of the next cell
+     */
+    @Override
+    public Spliterator<Configuration> successorSpliterator()
+    {
+        int free = nextCell();
+        if (free < 0)
+            return new SuccessorSpliterator(0, null);
+        return new SuccessorSpliterator(candidates(free), value -> new BitmaskConfig(this, free, value));
+    }
+
+    /**
+     * isValid() - checks the visibility of the lines against their borders.
+     * Only the rows and columns of the cells placed since a valid parent can
+     * have changed, so in incremental mode those lines are all that gets
+     * checked.
+     *
+     * @return true if config is valid, false otherwise
+     */
+    @Override
+    public boolean isValid()
+    {
+        if (dead)
+            valid = false;
+        else if (incremental && parentValid)
+        {
+            valid = true;
+            for (int left = dirtyRows; left != 0 && valid; left &= left - 1)
+                valid = !invalidRow(Integer.numberOfTrailingZeros(left));
+            for (int left = dirtyCols; left != 0 && valid; left &= left - 1)
+                valid = !invalidColumn(Integer.numberOfTrailingZeros(left));
+        }
+        else
+        {
+            valid = true;
+            for (int i = 0; i < size && valid; i++)
+                valid = !invalidRow(i) && !invalidColumn(i);
+        }
+        return valid;
+    }
+
+    /**
+     * @param y the row
+     * @return true if the row can not satisfy its west or east border
+     */
+    private boolean invalidRow(int y)
+    {
+        return invalidLine(borders[SkyscraperConfig.WEST][y], y * size, 1)
+                || invalidLine(borders[SkyscraperConfig.EAST][y], y * size + size - 1, -1);
+    }
+
+    /**
+     * @param x the column
+     * @return true if the column can not satisfy its north or south border
+     */
+    private boolean invalidColumn(int x)
+    {
+        return invalidLine(borders[SkyscraperConfig.NORTH][x], x, size)
+                || invalidLine(borders[SkyscraperConfig.SOUTH][x], cells - size + x, -size);
+    }
+
+    /**
+     * Check one line of the grid as seen from its border.  This is the same
+     * rule SkyscraperConfig uses: a full line must show exactly the border
+     * count, a partial line must still be able to reach it with the empty
+     * cells in front of the tallest possible tower.
+     *
+     * @param self  How many should be seen, 0 if the border has no clue
+     * @param start The grid index of the cell next to the border
+     * @param step  How far apart consecutive cells of the line are
+     * @return      True if the line can not satisfy its border, false otherwise
+     */
+    private boolean invalidLine(int self, int start, int step)
+    {
+        if (self == 0)
+            return false;
+
+        int count = 0;      //How many buildings are visible from the border
+        int empty = 0;      //How many empty spaces are seen before the tallest tower
+        int epast = 0;      //How many empty spaces are seen after the tallest tower
+        int tallest = 0;    //What is the tallest tower seen so far
+        boolean pastTallest = false;
+
+        for (int i = 0, at = start; i < size; i++, at += step)
+        {
+            int current = state[at];
+            if (current == SkyscraperConfig.EMPTY)
+            {
+                if (pastTallest)
+                    epast++;
+                else
+                    empty++;
+            }
+            else if (current > tallest)
+            {
+                count++;
+                tallest = current;
+            }
+            if (current == size)
+                pastTallest = true;
+        }
+
+        if (empty + epast == 0)
+            return self != count;
+        return self > empty + count;
+    }
+
+    /**
+     * Turn on propagation for this board and every config made from it.
+     * Cuts the domains down by the border distances and then propagates
+     * this board to a fixpoint.
+     */
+    public void enablePropagation()
+    {
+        if (propagate)
+            return;
+        propagate = true;
+        forced = new LongAdder();
+
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                int at = y * size + x;
+                if (state[at] != SkyscraperConfig.EMPTY)
+                    continue;
+                int highest = Math.min(Math.min(highest(SkyscraperConfig.NORTH, x, y),
+                                                highest(SkyscraperConfig.SOUTH, x, size - 1 - y)),
+                                       Math.min(highest(SkyscraperConfig.WEST, y, x),
+                                                highest(SkyscraperConfig.EAST, y, size - 1 - x)));
+                set(domainAt + at, state[domainAt + at] & ((1 << highest) - 1));
+            }
+        }
+        dead = dead || !propagate();
+    }
+
+    /**
+     * The tallest tower that fits a cell given one of its borders: with c
+     * visible from the border, the d closest cells must leave room for at
+     * least c - d - 1 taller towers behind them.
+     *
+     * @param side which border
+     * @param i which entry of that border
+     * @param distance how many cells lie between the cell and the border
+     * @return the tallest value the cell can hold
+     */
+    private int highest(int side, int i, int distance)
+    {
+        int clue = borders[side][i];
+        if (clue == 0)
+            return size;
+        return Math.min(size, size - clue + distance + 1);
+    }
+
+    /**
+     * @return how many cells propagation has filled so far in this search,
+     * each one a node the search did not have to branch on
+     */
+    public long getForcedCount()
+    {
+        return forced == null ? 0 : forced.sum();
+    }
+
+    /**
+     * Run the naked single, hidden single and line rules until none of them
+     * changes the board
+     *
+     * @return false if some cell or line has no way left to be filled
+     */
+    private boolean propagate()
+    {
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+
+            //Naked singles
+            for (int at = 0; at < cells; at++)
+            {
+                if (state[at] != SkyscraperConfig.EMPTY)
+                    continue;
+                int left = candidates(at);
+                if (left == 0)
+                    return false;
+                if ((left & (left - 1)) == 0)
+                {
+                    place(at, Integer.numberOfTrailingZeros(left) + 1);
+                    forced.increment();
+                    changed = true;
+                }
+            }
+
+            //Hidden singles
+            for (int i = 0; i < size; i++)
+            {
+                int rowResult = hiddenSingles(i * size, 1, rowAt + i);
+                int colResult = hiddenSingles(i, size, colAt + i);
+                if (rowResult < 0 || colResult < 0)
+                    return false;
+                changed |= rowResult > 0 || colResult > 0;
+            }
+
+            //Lines that can not be finished to match their borders
+            for (int i = 0; i < size; i++)
+            {
+                int rowResult = filterLine(borders[SkyscraperConfig.WEST][i], borders[SkyscraperConfig.EAST][i],
+                                           i * size, 1);
+                if (rowResult < 0)
+                    return false;
+                int colResult = filterLine(borders[SkyscraperConfig.NORTH][i], borders[SkyscraperConfig.SOUTH][i],
+                                           i, size);
+                if (colResult < 0)
+                    return false;
+                changed |= rowResult > 0 || colResult > 0;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Place every value that only fits one empty cell of a line
+     *
+     * @param start the grid index of the first cell of the line
+     * @param step how far apart consecutive cells of the line are
+     * @param usedAt the state index of the line's used mask
+     * @return -1 if some value fits nowhere, 1 if a value was placed, 0 otherwise
+     */
+    private int hiddenSingles(int start, int step, int usedAt)
+    {
+        int once = 0;       //Values that fit at least one empty cell
+        int twice = 0;      //Values that fit at least two empty cells
+        for (int i = 0, at = start; i < size; i++, at += step)
+        {
+            if (state[at] == SkyscraperConfig.EMPTY)
+            {
+                int left = candidates(at);
+                twice |= once & left;
+                once |= left;
+            }
+        }
+        if ((full & ~state[usedAt] & ~once) != 0)
+            return -1;
+
+        int singles = once & ~twice;
+        for (int left = singles; left != 0; left &= left - 1)
+        {
+            int value = left & -left;
+            int at = start;
+            while (state[at] != SkyscraperConfig.EMPTY || (candidates(at) & value) == 0)
+            {
+                at += step;
+                //The only cell for this value took another single of the line
+                if (at == start + size * step)
+                    return -1;
+            }
+            place(at, Integer.numberOfTrailingZeros(value) + 1);
+            forced.increment();
+        }
+        return singles == 0 ? 0 : 1;
+    }
+
+    /**
+     * Remove the candidates of a line that do not appear in any way of
+     * filling the line's empty cells that shows exactly its border counts.
+     * Lines with up to LINE_LIMIT ways left are searched, longer ones are
+     * checked against the precomputed LinePermutations table, or searched
+     * for at most LINE_BUDGET steps when the board is too big to have one.
+     *
+     * @param front the border at the start of the line, 0 for none
+     * @param back the border at the end of the line, 0 for none
+     * @param start the grid index of the first cell of the line
+     * @param step how far apart consecutive cells of the line are
+     * @return -1 if the line can not be finished, 1 if a candidate was removed, 0 otherwise
+     */
+    private int filterLine(int front, int back, int start, int step)
+    {
+        if (front == 0 && back == 0)
+            return 0;
+        if (lineCells == null || lineScratch.owner != Thread.currentThread())
+        {
+            //Copies handed to another thread can not write to the same arrays
+            if (lineScratch == null || lineScratch.owner != Thread.currentThread())
+                lineScratch = new LineScratch(size);
+            lineCells = lineScratch.cells;
+            lineCand = lineScratch.cand;
+            lineValue = lineScratch.value;
+            lineSupport = lineScratch.support;
+            lineMemo = lineScratch.memo;
+            lineChecked = lineScratch.checked;
+        }
+
+        int ways = 1;
+        int look = 1;       //What the line looks like, to skip it when nothing changed since the last check
+        for (int i = 0, at = start; i < size; i++, at += step)
+        {
+            lineCells[i] = at;
+            lineSupport[i] = 0;
+            if (state[at] == SkyscraperConfig.EMPTY)
+            {
+                lineCand[i] = candidates(at);
+                lineValue[i] = SkyscraperConfig.EMPTY;
+                ways = Math.min(ways * Integer.bitCount(lineCand[i]), LINE_LIMIT + 1);
+                if (ways == 0)
+                    return -1;
+                look = 31 * look + lineCand[i];
+            }
+            else
+            {
+                lineCand[i] = 0;
+                lineValue[i] = state[at];
+                look = 31 * look - lineValue[i];
+            }
+        }
+        int line = step == 1 ? start / size : size + start;
+        if (ways == 1 || lineChecked[line] == look)
+            return 0;
+        if (ways > LINE_LIMIT && size <= LinePermutations.MAX_SIZE)
+        {
+            if (!LinePermutations.of(size).support(front, back, lineValue, lineCand, lineSupport))
+                return -1;
+        }
+        else
+        {
+            lineSupported = false;
+            lineDone = false;
+            lineBudget = LINE_BUDGET;
+            lineMemoSize = 0;
+            lineGeneration = ++lineScratch.generation;
+            completeLine(0, 0, 0, 0, front, back);
+            if (lineBudget < 0)
+            {
+                lineChecked[line] = look;
+                return 0;       //Gave up, what was seen so far proves nothing
+            }
+            if (!lineSupported)
+                return -1;
+        }
+
+        int result = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if (lineCand[i] != lineSupport[i])
+            {
+                set(domainAt + lineCells[i], lineSupport[i]);
+                result = 1;
+            }
+        }
+        if (result == 0)
+            lineChecked[line] = look;
+        return result;
+    }
+
+    /**
+     * Try every way of filling the rest of the line from position i,
+     * recording the values of each completion that shows the right counts.
+     * Both counts are worked out as the line is filled from the front: a
+     * tower is seen from the back when every taller tower is already
+     * placed before it.  How the rest of the line can be filled only
+     * depends on which values are placed and the two counts so far, so
+     * those partial lines are remembered and searched only once.
+     *
+     * @param i the position in the line to fill next
+     * @param placed the values placed before position i
+     * @param count how many towers before position i are visible from the front
+     * @param seen how many towers before position i are visible from the back
+     * @param front the border at the start of the line, 0 for none
+     * @param back the border at the end of the line, 0 for none
+     * @return true if the line can be finished from here
+     */
+    private boolean completeLine(int i, int placed, int count, int seen, int front, int back)
+    {
+        if (lineDone || --lineBudget < 0)
+        {
+            lineDone = true;
+            return true;
+        }
+        int left = size - i;
+        int tallest = 32 - Integer.numberOfLeadingZeros(placed);
+        if (front != 0 && (count > front || count + left < front || (tallest == size && count != front)))
+            return false;
+        //The tallest tower still to come will be seen from the back
+        if (back != 0 && (seen + left < back || (left > 0 ? seen >= back : seen != back)))
+            return false;
+        if (i == size)
+        {
+            lineSupported = true;
+            supportLine(size);
+            return true;
+        }
+
+        int key = placed | count << 16 | seen << 21;
+        int slot = memoSlot(key);
+        long entry = lineMemo[slot];
+        if ((int) (entry >>> 32) == lineGeneration)
+        {
+            if ((entry & 1) == 0)
+                return false;
+            supportLine(i);
+            return true;
+        }
+
+        boolean finished = false;
+        if (lineCand[i] == 0)
+        {
+            //A value given twice in one line can never be finished
+            finished = (placed & bit(lineValue[i])) == 0
+                       && placeInLine(i, lineValue[i], placed, count, seen, front, back);
+        }
+        else
+        {
+            for (int options = lineCand[i] & ~placed; options != 0 && !lineDone; options &= options - 1)
+            {
+                lineValue[i] = Integer.numberOfTrailingZeros(options) + 1;
+                finished |= placeInLine(i, lineValue[i], placed, count, seen, front, back);
+            }
+        }
+        if (lineMemoSize < lineMemo.length / 2 && !lineDone)
+        {
+            slot = memoSlot(key);   //The search below may have taken the slot found before it
+            lineMemo[slot] = (long) lineGeneration << 32 | (long) key << 1 | (finished ? 1 : 0);
+            lineMemoSize++;
+        }
+        return finished;
+    }
+
+    /**
+     * Put a value at position i of the scratch line and search the rest
+     */
+    private boolean placeInLine(int i, int value, int placed, int count, int seen, int front, int back)
+    {
+        int taller = full & ~(bit(value + 1) - 1);
+        return completeLine(i + 1, placed | bit(value), value > 32 - Integer.numberOfLeadingZeros(placed) ? count + 1 : count,
+                            (taller & ~placed) == 0 ? seen + 1 : seen, front, back);
+    }
+
+    /**
+     * Find the memo slot of a partial line: the slot holding it, or the
+     * free slot where it goes
+     */
+    private int memoSlot(int key)
+    {
+        int mask = lineMemo.length - 1;
+        int slot = (key * 0x9E3779B1) >>> 19 & mask;
+        while ((int) (lineMemo[slot] >>> 32) == lineGeneration && (int) lineMemo[slot] >>> 1 != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Record the values of the first n cells of the scratch line as
+     * supported, stopping the search once every candidate is
+     *
+     * @param n how many cells of the line are filled in
+     */
+    private void supportLine(int n)
+    {
+        boolean all = true;
+        for (int j = 0; j < size; j++)
+        {
+            if (lineCand[j] != 0)
+            {
+                if (j < n)
+                    lineSupport[j] |= bit(lineValue[j]);
+                all &= lineSupport[j] == lineCand[j];
+            }
+        }
+        lineDone = all;
+    }
+
+    /**
+     * @return this board as a SkyscraperConfig
+     */
+    public SkyscraperConfig toSkyscraperConfig()
+    {
+        int[] grid = new int[cells];
+        System.arraycopy(state, 0, grid, 0, cells);
+        return new SkyscraperConfig(size, borders, grid);
+    }
+
+    /**
+     * toString() method
+     *
+     * @return the board in the same format as SkyscraperConfig
+     */
+    @Override
+    public String toString()
+    {
+        return BoardFormat.toString(size, borders, at -> state[at]);
+    }
+
+    @Override
+    public void render(Appendable out) throws IOException
+    {
+        BoardFormat.render(out, size, borders, at -> state[at]);
+    }
+
+    @Override
+    public void renderCompact(Appendable out) throws IOException
+    {
+        BoardFormat.renderCompact(out, size, at -> state[at]);
+    }
+
+    /**
+     * The arrays of the line check.  Only the thread that made them writes to
+     * them.  lineChecked is kept with them, since what it records depends
+     * only on the line and its borders, so it holds for every board of the
+     * search, and the generation is shared so no two checks tag lineMemo
+     * entries the same.
+     */
+    private static final class LineScratch
+    {
+        private final Thread owner = Thread.currentThread();
+        private final int[] cells;
+        private final int[] cand;
+        private final int[] value;
+        private final int[] support;
+        private final long[] memo;
+        private final int[] checked;
+        private int generation;
+
+        private LineScratch(int size)
+        {
+            cells = new int[size];
+            cand = new int[size];
+            value = new int[size];
+            support = new int[size];
+            memo = new long[2 * (size > LinePermutations.MAX_SIZE ? LINE_MEMO : SHORT_LINE_MEMO)];
+            checked = new int[2 * size];
+        }
+    }
+}
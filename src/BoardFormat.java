@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Writes boards for RenderableConfiguration.  A board is built a character
+ * at a time, numbers included, in a StringBuilder that each thread keeps
+ * and reuses, and then handed to the output in one append.  Writers lock
+ * on every call, so this is much faster than appending each character to
+ * the output.
+ *
+ * @author Blake Batson
+ */
+final class BoardFormat {
+    private static final String NEWLINE = System.lineSeparator();
+
+    /** Boards with longer text than this do not keep their builder */
+    private static final int KEEP_CAPACITY = 1 << 14;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(StringBuilder::new);
+
+    private BoardFormat() {
+    }
+
+    /**
+     * Write a board in the toString() layout.
+     *
+     * @param out where to write
+     * @param size the length of each side of the grid
+     * @param borders the border arrays, in NORTH, EAST, SOUTH, WEST order
+     * @param cell the value of each cell by row-major index, EMPTY if empty
+     * @throws IOException if out can not be written
+     */
+    static void render(Appendable out, int size, int[][] borders, IntUnaryOperator cell) throws IOException {
+        if (out instanceof StringBuilder) {
+            build((StringBuilder) out, size, borders, cell);
+            return;
+        }
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        build(buffer, size, borders, cell);
+        flush(buffer, out);
+    }
+
+    /**
+     * Write a grid in the one line layout of renderCompact().
+     *
+     * @param out where to write
+     * @param size the length of each side of the grid
+     * @param cell the value of each cell by row-major index, EMPTY if empty
+     * @throws IOException if out can not be written
+     */
+    static void renderCompact(Appendable out, int size, IntUnaryOperator cell) throws IOException {
+        if (out instanceof StringBuilder) {
+            buildCompact((StringBuilder) out, size, cell);
+            return;
+        }
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        buildCompact(buffer, size, cell);
+        flush(buffer, out);
+    }
+
+    /**
+     * Render a board into a String, for toString().
+     */
+    static String toString(int size, int[][] borders, IntUnaryOperator cell) {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        build(buffer, size, borders, cell);
+        String text = buffer.toString();
+        trim(buffer);
+        return text;
+    }
+
+    private static void flush(StringBuilder buffer, Appendable out) throws IOException {
+        out.append(buffer);
+        trim(buffer);
+    }
+
+    /**
+     * Let a builder that grew for a very large board go.
+     */
+    private static void trim(StringBuilder buffer) {
+        if (buffer.capacity() > KEEP_CAPACITY) {
+            BUFFER.remove();
+        }
+    }
+
+    private static void build(StringBuilder out, int size, int[][] borders, IntUnaryOperator cell) {
+        int width = digits(size);   //Boards above 9x9 need wider columns
+
+        //North bar
+        spaces(out, width + 1);
+        numbers(out, borders[SkyscraperConfig.NORTH], size, width);
+        out.append(NEWLINE);
+        rule(out, size, width);
+
+        //West border, grid, east border
+        for (int y = 0; y < size; y++) {
+            number(out, borders[SkyscraperConfig.WEST][y], width);
+            out.append('|');
+            for (int x = 0; x < size; x++) {
+                if (x > 0) {
+                    out.append(' ');
+                }
+                int value = cell.applyAsInt(y * size + x);
+                if (value == SkyscraperConfig.EMPTY) {
+                    spaces(out, width - 1);
+                    out.append(SkyscraperConfig.EMPTY_CELL);
+                } else {
+                    number(out, value, width);
+                }
+            }
+            out.append('|');
+            number(out, borders[SkyscraperConfig.EAST][y], 0);
+            out.append(NEWLINE);
+        }
+
+        //South bar
+        rule(out, size, width);
+        spaces(out, width + 1);
+        numbers(out, borders[SkyscraperConfig.SOUTH], size, width);
+    }
+
+    private static void buildCompact(StringBuilder out, int size, IntUnaryOperator cell) {
+        number(out, size, 0);
+        out.append(':');
+        for (int at = 0; at < size * size; at++) {
+            out.append(Character.forDigit(cell.applyAsInt(at), Character.MAX_RADIX));
+        }
+    }
+
+    private static void rule(StringBuilder out, int size, int width) {
+        spaces(out, width + 1);
+        for (int i = size * (width + 1); i > 0; i--) {
+            out.append('-');
+        }
+        out.append(NEWLINE);
+    }
+
+    private static void numbers(StringBuilder out, int[] values, int size, int width) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                out.append(' ');
+            }
+            number(out, values[i], width);
+        }
+    }
+
+    private static void spaces(StringBuilder out, int count) {
+        for (int i = 0; i < count; i++) {
+            out.append(' ');
+        }
+    }
+
+    /**
+     * Append a non-negative number right aligned in a column.
+     */
+    private static void number(StringBuilder out, int value, int width) {
+        int digits = digits(value);
+        spaces(out, width - digits);
+        int power = 1;
+        for (int i = 1; i < digits; i++) {
+            power *= 10;
+        }
+        for (; power > 0; power /= 10) {
+            out.append((char) ('0' + value / power % 10));
+        }
+    }
+
+    private static int digits(int value) {
+        int digits = 1;
+        for (; value >= 10; value /= 10) {
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,459 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Makes boards to benchmark with.  The BoardGenerator class is run as:
+ *  $java BoardGenerator [directory] [size] [count] [options...]
+ *       [directory]: where to write the boards, created if needed
+ *       [size]: the length of each side of the boards
+ *       [count]: how many boards to write
+ *       [options]: optional
+ *                 givens=N       - how many cells of the solution to fill in (default: 0), not
+ *                                  with unique, which decides that itself
+ *                 seed=N         - random seed, the same seed makes the same boards (default: 1)
+ *                 unique         - make boards with exactly one solution, see below
+ *                 difficulty=D   - with unique, what may be taken off the board: easy takes givens
+ *                                  and border clues in one random order, medium (default) keeps
+ *                                  every border and takes givens, hard takes givens and then
+ *                                  border clues
+ *                 threads=N      - how many boards to make at once (default: all cores)
+ *
+ * Each board is a random Latin square with every border filled in from it,
+ * so it always has a solution, though not necessarily only one.  The files
+ * are named SIZExSIZE-N.txt and end with a description, like the boards in
+ * data.
+ *
+ * With unique the Latin square is drawn uniformly at random and the board
+ * starts out as the whole solution with every border.  Givens and clues
+ * are then taken off one at a time, each one put back if the board no
+ * longer has a unique solution, until nothing more can go.  A clue of 0
+ * means the border has no clue.  Checking uniqueness is most of the work,
+ * so boards are made on several threads, and the boards per second are
+ * reported at the end.
+ *
+ * @author Blake Batson
+ */
+public class BoardGenerator {
+    /**
+     * What minimize() may take off a board.  Boards left with few givens
+     * and few clues take the solver the most nodes: on 6x6 boards the
+     * bitmask search averages a few thousand nodes on easy and medium
+     * boards and hundreds of thousands on hard ones.
+     */
+    public enum Difficulty {
+        /** Givens and border clues in one random order, many givens stay */
+        EASY,
+        /** Givens only, every border clue stays */
+        MEDIUM,
+        /** Givens first, then border clues */
+        HARD
+    }
+
+    private final SplittableRandom random;
+
+    /**
+     * Initialize a new generator.
+     *
+     * @param seed the random seed
+     */
+    public BoardGenerator(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private BoardGenerator(SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Make a generator for another thread.  Its boards do not depend on
+     * what this one makes afterwards.
+     *
+     * @return a new generator seeded from this one
+     */
+    public BoardGenerator split() {
+        return new BoardGenerator(random.split());
+    }
+
+    /**
+     * Make a random Latin square: every row and column holds 1..size once.
+     * The cyclic square is shuffled by rows, columns and values, which is
+     * quick but does not reach every Latin square of the size.
+     *
+     * @param size the length of each side
+     * @return the square in row-major order
+     */
+    public int[] latinSquare(int size) {
+        int[] rows = shuffled(size);
+        int[] cols = shuffled(size);
+        int[] values = shuffled(size);
+        int[] grid = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                grid[y * size + x] = values[(rows[y] + cols[x]) % size] + 1;
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Make a Latin square drawn uniformly from every Latin square of the
+     * size, with the Markov chain of Jacobson and Matthews.  The square is
+     * kept as its incidence cube, cube[r][c][s] is 1 if row r, column c
+     * holds symbol s.  Each step moves a +-1 cycle around a 2x2x2 sub-cube;
+     * that can leave one entry at -1, an improper square, which the next
+     * steps carry around until it is gone.
+     *
+     * @param size the length of each side
+     * @return the square in row-major order
+     */
+    public int[] randomLatinSquare(int size) {
+        int n = size;
+        int[] cube = new int[n * n * n];
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                cube[(r * n + c) * n + (r + c) % n] = 1;
+            }
+        }
+
+        int r = 0;
+        int c = 0;
+        int s = 0;
+        boolean proper = true;
+        for (int step = 0; step < n * n * n || !proper; step++) {
+            if (proper) {
+                do {
+                    r = random.nextInt(n);
+                    c = random.nextInt(n);
+                    s = random.nextInt(n);
+                } while (cube[(r * n + c) * n + s] != 0);
+            }
+            // one of the 1s on each line through (r, c, s), there are two while improper
+            int r2 = pickOne(cube, c * n + s, n * n, n);
+            int c2 = pickOne(cube, r * n * n + s, n, n);
+            int s2 = pickOne(cube, (r * n + c) * n, 1, n);
+
+            cube[(r * n + c) * n + s]++;
+            cube[(r * n + c2) * n + s2]++;
+            cube[(r2 * n + c) * n + s2]++;
+            cube[(r2 * n + c2) * n + s]++;
+            cube[(r * n + c) * n + s2]--;
+            cube[(r * n + c2) * n + s]--;
+            cube[(r2 * n + c) * n + s]--;
+            proper = --cube[(r2 * n + c2) * n + s2] >= 0;
+            if (!proper) {
+                r = r2;
+                c = c2;
+                s = s2;
+            }
+        }
+
+        int[] grid = new int[n * n];
+        for (int at = 0; at < n * n; at++) {
+            for (int symbol = 0; symbol < n; symbol++) {
+                if (cube[at * n + symbol] == 1) {
+                    grid[at] = symbol + 1;
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * @return the position along a line of the cube of one of its 1s, picked at random
+     */
+    private int pickOne(int[] cube, int start, int step, int n) {
+        int picked = -1;
+        int seen = 0;
+        for (int i = 0, at = start; i < n; i++, at += step) {
+            if (cube[at] == 1 && random.nextInt(++seen) == 0) {
+                picked = i;
+            }
+        }
+        return picked;
+    }
+
+    /**
+     * @return 0..n-1 in random order
+     */
+    private int[] shuffled(int n) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+
+    /**
+     * Work out the borders that match a filled grid.
+     *
+     * @param size the length of each side
+     * @param grid a full grid in row-major order
+     * @return the borders, in SkyscraperConfig's NORTH, EAST, SOUTH, WEST order
+     */
+    public static int[][] borders(int size, int[] grid) {
+        int[][] borders = new int[4][size];
+        for (int i = 0; i < size; i++) {
+            borders[SkyscraperConfig.NORTH][i] = visible(grid, i, size, size);
+            borders[SkyscraperConfig.EAST][i] = visible(grid, i * size + size - 1, -1, size);
+            borders[SkyscraperConfig.SOUTH][i] = visible(grid, (size - 1) * size + i, -size, size);
+            borders[SkyscraperConfig.WEST][i] = visible(grid, i * size, 1, size);
+        }
+        return borders;
+    }
+
+    /**
+     * @return how many towers of a full line are visible walking from start
+     */
+    private static int visible(int[] grid, int start, int step, int size) {
+        int count = 0;
+        int tallest = 0;
+        for (int i = 0, at = start; i < size; i++, at += step) {
+            if (grid[at] > tallest) {
+                count++;
+                tallest = grid[at];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Keep some cells of a solution and empty the rest.
+     *
+     * @param solution a full grid in row-major order
+     * @param givens how many cells to keep
+     * @return the grid with only the kept cells filled in
+     */
+    public int[] givens(int[] solution, int givens) {
+        int[] grid = new int[solution.length];
+        int[] order = shuffled(solution.length);
+        for (int i = 0; i < Math.min(givens, solution.length); i++) {
+            grid[order[i]] = solution[order[i]];
+        }
+        return grid;
+    }
+
+    /**
+     * Take givens and border clues off a board with one solution for as
+     * long as it keeps exactly one.  Each one is tried once, in random
+     * order, and put back if the board would have more than one solution
+     * without it, so what is left is minimal: nothing else can go.
+     *
+     * @param size the length of each side
+     * @param borders the borders, changed in place, 0 where a clue is taken
+     * @param grid the grid in row-major order, changed in place
+     * @param difficulty what may be taken
+     */
+    public void minimize(int size, int[][] borders, int[] grid, Difficulty difficulty) {
+        int cells = size * size;
+        int[] order;
+        if (difficulty == Difficulty.MEDIUM) {
+            order = shuffled(cells);
+        } else if (difficulty == Difficulty.HARD) {
+            order = new int[cells + 4 * size];
+            System.arraycopy(shuffled(cells), 0, order, 0, cells);
+            int[] clues = shuffled(4 * size);
+            for (int i = 0; i < clues.length; i++) {
+                order[cells + i] = cells + clues[i];
+            }
+        } else {
+            order = shuffled(cells + 4 * size);
+        }
+
+        // items below cells are grid cells, the rest are clues side by side
+        for (int item : order) {
+            int[] values = item < cells ? grid : borders[(item - cells) / size];
+            int at = item < cells ? item : (item - cells) % size;
+            int value = values[at];
+            if (value == 0) {
+                continue;
+            }
+            values[at] = 0;
+            if (!isUnique(size, borders, grid)) {
+                values[at] = value;
+            }
+        }
+    }
+
+    /**
+     * Does a board have exactly one solution?
+     *
+     * @param size the length of each side
+     * @param borders the borders, 0 for no clue
+     * @param grid the grid in row-major order, 0 for an empty cell
+     * @return true if there is one solution, false for none or several
+     */
+    public static boolean isUnique(int size, int[][] borders, int[] grid) {
+        BitmaskConfig board = new BitmaskConfig(new SkyscraperConfig(size, borders, grid), true);
+        board.setCellSelector(MrvSelector.INSTANCE);
+        board.enablePropagation();
+        return new SolutionCounter(1, 0).isUnique(board);
+    }
+
+    /**
+     * @return how many entries of values are not 0
+     */
+    private static int filled(int[]... values) {
+        int count = 0;
+        for (int[] line : values) {
+            for (int value : line) {
+                if (value != 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Write a board in the board file format.
+     *
+     * @param out where to write
+     * @param size the length of each side
+     * @param borders the borders, in NORTH, EAST, SOUTH, WEST order
+     * @param grid the grid in row-major order, 0 for an empty cell
+     */
+    public static void write(PrintWriter out, int size, int[][] borders, int[] grid) {
+        out.println(size);
+        for (int[] side : borders) {
+            line(out, side, 0, size);
+        }
+        for (int y = 0; y < size; y++) {
+            line(out, grid, y * size, size);
+        }
+    }
+
+    private static void line(PrintWriter out, int[] values, int from, int count) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                out.print(' ');
+            }
+            out.print(values[from + i]);
+        }
+        out.println();
+    }
+
+    /**
+     * Write a board file.
+     *
+     * @param file where to write
+     * @param size the length of each side
+     * @param borders the borders, in NORTH, EAST, SOUTH, WEST order
+     * @param grid the grid in row-major order, 0 for an empty cell
+     * @param description the line that ends the file
+     * @return file
+     * @throws UncheckedIOException if the file can not be written
+     */
+    private static Path write(Path file, int size, int[][] borders, int[] grid, String description) {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            write(out, size, borders, grid);
+            out.println();
+            out.println(description);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return file;
+    }
+
+    /**
+     * The main program.
+     * @param args command line arguments
+     * @throws IOException if a board can not be written
+     * @throws InterruptedException if interrupted while boards are being made
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3) {
+            System.err.println("Usage: java BoardGenerator directory size count [options...]");
+            return;
+        }
+        Path directory = Paths.get(args[0]);
+        int size = Integer.parseInt(args[1]);
+        int count = Integer.parseInt(args[2]);
+        int givens = -1;    // -1 until givens= is seen
+        long seed = 1;
+        boolean unique = false;
+        Difficulty difficulty = Difficulty.MEDIUM;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].startsWith("givens=")) {
+                givens = Integer.parseInt(args[i].substring("givens=".length()));
+            } else if (args[i].startsWith("seed=")) {
+                seed = Long.parseLong(args[i].substring("seed=".length()));
+            } else if (args[i].equals("unique")) {
+                unique = true;
+            } else if (args[i].startsWith("difficulty=")) {
+                difficulty = Difficulty.valueOf(args[i].substring("difficulty=".length()).toUpperCase(Locale.ROOT));
+            } else if (args[i].startsWith("threads=")) {
+                threads = Integer.parseInt(args[i].substring("threads=".length()));
+            }
+        }
+        if (unique && givens >= 0) {
+            System.err.println("givens= can not be used with unique, which keeps only the givens it needs");
+            return;
+        }
+        givens = Math.max(givens, 0);
+
+        Files.createDirectories(directory);
+        long start = System.nanoTime();
+        BoardGenerator generator = new BoardGenerator(seed);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Path>> files = new ArrayList<>();
+            for (int n = 1; n <= count; n++) {
+                Path file = directory.resolve(size + "x" + size + "-" + n + ".txt");
+                String where = String.format("seed %d, board %d", seed, n);
+                if (unique) {
+                    // each board gets its own generator, so the boards do not depend on the threads
+                    BoardGenerator own = generator.split();
+                    Difficulty level = difficulty;
+                    files.add(pool.submit(() -> {
+                        int[] grid = own.randomLatinSquare(size);
+                        int[][] borders = borders(size, grid);
+                        own.minimize(size, borders, grid, level);
+                        return write(file, size, borders, grid, String.format(
+                                "Generated %dx%d board with a unique solution, %d clues and %d givens (%s, %s).",
+                                size, size, filled(borders), filled(grid), level.name().toLowerCase(Locale.ROOT),
+                                where));
+                    }));
+                } else {
+                    int[] solution = generator.latinSquare(size);
+                    int[] grid = generator.givens(solution, givens);
+                    String description = String.format(
+                            "Generated %dx%d board with every border and %d givens (%s).", size, size, givens, where);
+                    files.add(pool.submit(() -> write(file, size, borders(size, solution), grid, description)));
+                }
+            }
+            for (Future<Path> file : files) {
+                System.out.println(file.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Generated %d boards in %.3f seconds (%.1f boards/sec on %d threads).%n",
+                count, seconds, count / seconds, threads);
+    }
+}
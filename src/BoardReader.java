@@ -0,0 +1,244 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads board files a byte at a time, straight into the board arrays.
+ * Nothing is split into lines or Strings, so loading thousands of small
+ * boards costs little more than reading their bytes.
+ *
+ * A board is the DIM line, the four border lines and the DIM grid lines
+ * described in SkyscraperConfig.  As before, anything after the DIM
+ * numbers of a line is ignored and so is everything after the last grid
+ * line, which is where the board files keep their description.  A file
+ * may hold any number of boards one after another; the next board starts
+ * at the first line that holds nothing but a number:
+ *
+ *  4
+ *  2 1 3 2
+ *  ...
+ *  0 0 0 0
+ *  The first board, its description can take several lines.
+ *  5
+ *  ...         # the second board
+ *
+ * Small files are read into memory, larger ones are memory-mapped.
+ *
+ * @author Blake Batson
+ */
+public class BoardReader implements Iterator<SkyscraperConfig> {
+    /** Files at least this long are mapped instead of read */
+    private static final long MAP_THRESHOLD = 1 << 16;
+
+    private final String name;
+    private final ByteBuffer input;
+    private final int limit;
+    private int position;
+    private int boards;
+
+    /**
+     * Open a file of one or more boards.
+     *
+     * @param file the board file
+     * @throws IOException if the file can not be read
+     */
+    public BoardReader(Path file) throws IOException {
+        this.name = file.toString();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException(name + " is too large to read");
+            }
+            if (length >= MAP_THRESHOLD) {
+                input = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            } else {
+                input = ByteBuffer.allocate((int) length);
+                while (input.hasRemaining()) {
+                    if (channel.read(input) < 0) {
+                        break;
+                    }
+                }
+                input.flip();
+            }
+        }
+        this.limit = input.limit();
+    }
+
+    /**
+     * Read boards that are already in memory, e.g. sent over a socket.
+     *
+     * @param name what to call the text in error messages
+     * @param text the boards in the board file format
+     */
+    public BoardReader(String name, byte[] text) {
+        this.name = name;
+        this.input = ByteBuffer.wrap(text);
+        this.limit = input.limit();
+    }
+
+    /**
+     * Read the first board of a file.
+     *
+     * @param fileName the board file
+     * @return the board, with the cells its borders force already filled in
+     * @throws FileNotFoundException if the file does not exist
+     * @throws IllegalArgumentException if the file is not a board
+     */
+    public static SkyscraperConfig readBoard(String fileName) throws FileNotFoundException {
+        try {
+            return new BoardReader(Paths.get(fileName)).next();
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(fileName + " (No such file or directory)");
+        } catch (NoSuchElementException e) {
+            throw new IllegalArgumentException(fileName + ": no board in file");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read every board of a file.
+     *
+     * @param file the board file
+     * @return the boards in file order
+     * @throws IOException if the file can not be read
+     * @throws IllegalArgumentException if the file holds something other than boards
+     */
+    public static List<SkyscraperConfig> readAll(Path file) throws IOException {
+        List<SkyscraperConfig> boards = new ArrayList<>();
+        BoardReader reader = new BoardReader(file);
+        while (reader.hasNext()) {
+            boards.add(reader.next());
+        }
+        return boards;
+    }
+
+    /**
+     * @return how many boards have been read so far
+     */
+    public int getBoardCount() {
+        return boards;
+    }
+
+    /**
+     * Skip ahead to the next line that holds nothing but a number.
+     *
+     * @return true if there is another board
+     */
+    @Override
+    public boolean hasNext() {
+        while (position < limit) {
+            int at = skipSpaces(position);
+            int digits = at;
+            while (at < limit && isDigit(input.get(at))) {
+                at++;
+            }
+            if (at > digits && endOfLine(skipSpaces(at))) {
+                return true;
+            }
+            position = nextLine(at);
+        }
+        return false;
+    }
+
+    /**
+     * Read the next board.
+     *
+     * @return the board, with the cells its borders force already filled in
+     * @throws NoSuchElementException if there are no boards left
+     * @throws IllegalArgumentException if the next board is malformed
+     */
+    @Override
+    public SkyscraperConfig next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        boards++;
+        int size = nextInt(1, SkyscraperConfig.MAX_SIZE, "size");
+        position = nextLine(position);
+        int[][] borders = new int[4][size];
+        for (int side = 0; side < 4; side++) {
+            for (int i = 0; i < size; i++) {
+                borders[side][i] = nextInt(0, size, "border");
+            }
+            position = nextLine(position);
+        }
+        int[] cells = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                cells[y * size + x] = nextInt(0, size, "cell");
+            }
+            position = nextLine(position);
+        }
+        return SkyscraperConfig.newBoard(size, borders, cells);
+    }
+
+    /**
+     * Read one non-negative number from the current line and check its range.
+     */
+    private int nextInt(int min, int max, String what) {
+        position = skipSpaces(position);
+        int start = position;
+        int value = 0;
+        while (position < limit && isDigit(input.get(position))) {
+            value = value * 10 + input.get(position) - '0';
+            if (value > max) {
+                throw bad(what + " above " + max);
+            }
+            position++;
+        }
+        if (position == start) {
+            throw bad(position == limit ? "file ends in the middle of the board"
+                    : endOfLine(position) ? "line ends before its last " + what : "expected a " + what);
+        }
+        if (value < min) {
+            throw bad(what + " below " + min);
+        }
+        return value;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * @return the first index from at that is not a space or tab
+     */
+    private int skipSpaces(int at) {
+        while (at < limit && (input.get(at) == ' ' || input.get(at) == '\t')) {
+            at++;
+        }
+        return at;
+    }
+
+    /**
+     * @return true if at is the end of a line or of the file
+     */
+    private boolean endOfLine(int at) {
+        return at == limit || input.get(at) == '\n' || input.get(at) == '\r';
+    }
+
+    /**
+     * @return the index just after the end of the line at is on
+     */
+    private int nextLine(int at) {
+        while (at < limit && input.get(at) != '\n') {
+            at++;
+        }
+        return Math.min(at + 1, limit);
+    }
+
+    private IllegalArgumentException bad(String problem) {
+        return new IllegalArgumentException(name + ": board " + boards + ": " + problem + " at byte " + position);
+    }
+}
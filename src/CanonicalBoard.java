@@ -0,0 +1,188 @@
+/**
+ * One board out of the eight that are the same up to rotating and
+ * mirroring, the same for all eight.  The borders turn with the grid, so
+ * a north clue of a board turned a quarter clockwise is an east clue of
+ * the turned board.  Heights can not be relabeled because the clues fix
+ * them, so the eight symmetries of the square are the only ones.
+ *
+ * The canonical board is the one with the smallest key (see key()), and a
+ * solution of it is turned back into a solution of the board that was
+ * asked about with toQueried().
+ *
+ * @author Blake Batson
+ */
+public final class CanonicalBoard {
+    /** How many symmetries a square has */
+    public static final int SYMMETRIES = 8;
+
+    /** Per symmetry, the one that undoes it */
+    private static final int[] INVERSE = {0, 3, 2, 1, 4, 5, 6, 7};
+
+    private final int size;
+    private final int symmetry;     //Takes the queried board to this one
+    private final byte[] key;
+
+    private CanonicalBoard(int size, int symmetry, byte[] key) {
+        this.size = size;
+        this.symmetry = symmetry;
+        this.key = key;
+    }
+
+    /**
+     * Find the canonical form of a board.
+     *
+     * @param board the board asked about
+     * @return its canonical form
+     */
+    public static CanonicalBoard of(SkyscraperConfig board) {
+        int size = board.getSize();
+        int[] grid = new int[size * size];
+        for (int at = 0; at < grid.length; at++) {
+            grid[at] = board.getCell(at / size, at % size);
+        }
+        int[] frame = frame(size, board.getBorders(), grid);
+
+        byte[] best = null;
+        int bestSymmetry = 0;
+        for (int symmetry = 0; symmetry < SYMMETRIES; symmetry++) {
+            byte[] key = key(size, transform(size, symmetry, frame));
+            if (best == null || compare(key, best) < 0) {
+                best = key;
+                bestSymmetry = symmetry;
+            }
+        }
+        return new CanonicalBoard(size, bestSymmetry, best);
+    }
+
+    /**
+     * The canonical board as bytes: the size, the NORTH, EAST, SOUTH and
+     * WEST borders and then the grid in row-major order.
+     *
+     * @return the key, not a copy
+     */
+    public byte[] key() {
+        return key;
+    }
+
+    /**
+     * @return the length of each side of the grid
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return which of the SYMMETRIES takes the queried board to this one
+     */
+    public int getSymmetry() {
+        return symmetry;
+    }
+
+    /**
+     * Turn a grid of the queried board, a solution for example, the way the
+     * canonical board is turned.
+     *
+     * @param grid a grid in row-major order
+     * @return the turned grid
+     */
+    public int[] toCanonical(int[] grid) {
+        return turnGrid(symmetry, grid);
+    }
+
+    /**
+     * Turn a grid of the canonical board back to the queried board.
+     *
+     * @param grid a grid in row-major order, a solution of the canonical board
+     * @return the grid as it lies on the queried board
+     */
+    public int[] toQueried(int[] grid) {
+        return turnGrid(INVERSE[symmetry], grid);
+    }
+
+    private int[] turnGrid(int symmetry, int[] grid) {
+        int[] turned = transform(size, symmetry, frame(size, new int[4][size], grid));
+        int[] out = new int[size * size];
+        int side = size + 2;
+        for (int y = 0; y < size; y++) {
+            System.arraycopy(turned, (y + 1) * side + 1, out, y * size, size);
+        }
+        return out;
+    }
+
+    /**
+     * Lay the board out on a square two wider than the grid, with the
+     * borders on its edges: north clue i at (0, i + 1), east clue i at
+     * (i + 1, size + 1) and so on, cell (y, x) at (y + 1, x + 1).  Turning
+     * this square turns the grid and the borders together.
+     */
+    private static int[] frame(int size, int[][] borders, int[] grid) {
+        int side = size + 2;
+        int last = size + 1;
+        int[] frame = new int[side * side];
+        for (int i = 0; i < size; i++) {
+            frame[i + 1] = borders[SkyscraperConfig.NORTH][i];
+            frame[(i + 1) * side + last] = borders[SkyscraperConfig.EAST][i];
+            frame[last * side + i + 1] = borders[SkyscraperConfig.SOUTH][i];
+            frame[(i + 1) * side] = borders[SkyscraperConfig.WEST][i];
+        }
+        for (int y = 0; y < size; y++) {
+            System.arraycopy(grid, y * size, frame, (y + 1) * side + 1, size);
+        }
+        return frame;
+    }
+
+    /**
+     * Apply one of the symmetries to a framed board.
+     */
+    private static int[] transform(int size, int symmetry, int[] frame) {
+        int side = size + 2;
+        int m = size + 1;
+        int[] out = new int[frame.length];
+        for (int u = 0; u < side; u++) {
+            for (int v = 0; v < side; v++) {
+                int nu;
+                int nv;
+                switch (symmetry) {
+                    case 0:  nu = u;     nv = v;     break;     //As it is
+                    case 1:  nu = v;     nv = m - u; break;     //Quarter turn clockwise
+                    case 2:  nu = m - u; nv = m - v; break;     //Half turn
+                    case 3:  nu = m - v; nv = u;     break;     //Quarter turn anticlockwise
+                    case 4:  nu = v;     nv = u;     break;     //Mirror in the main diagonal
+                    case 5:  nu = m - v; nv = m - u; break;     //Mirror in the other diagonal
+                    case 6:  nu = u;     nv = m - v; break;     //Mirror left to right
+                    default: nu = m - u; nv = v;     break;     //Mirror top to bottom
+                }
+                out[nu * side + nv] = frame[u * side + v];
+            }
+        }
+        return out;
+    }
+
+    private static byte[] key(int size, int[] frame) {
+        int side = size + 2;
+        int last = size + 1;
+        byte[] key = new byte[1 + 4 * size + size * size];
+        key[0] = (byte) size;
+        for (int i = 0; i < size; i++) {
+            key[1 + i] = (byte) frame[i + 1];
+            key[1 + size + i] = (byte) frame[(i + 1) * side + last];
+            key[1 + 2 * size + i] = (byte) frame[last * side + i + 1];
+            key[1 + 3 * size + i] = (byte) frame[(i + 1) * side];
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                key[1 + 4 * size + y * size + x] = (byte) frame[(y + 1) * side + x + 1];
+            }
+        }
+        return key;
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return Byte.compare(a[i], b[i]);
+            }
+        }
+        return 0;
+    }
+}
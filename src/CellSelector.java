@@ -0,0 +1,17 @@
+/**
+ * Picks which empty cell of a BitmaskConfig the search branches on next.
+ * The choice does not change which boards have a solution, only how many
+ * nodes it takes to find one: branching on a cell with few candidates
+ * keeps the tree narrow near the root.
+ *
+ * @author Blake Batson
+ */
+public interface CellSelector {
+    /**
+     * Choose the next cell to fill.
+     *
+     * @param board a board with at least one empty cell
+     * @return the index (y * size + x) of an empty cell
+     */
+    public int select(BitmaskConfig board);
+}
@@ -0,0 +1,60 @@
+/**
+ * Finishes the lines the borders say the most about first.  A line's
+ * visibility can only be checked exactly once it is full, so this picks
+ * the row or column with a border clue that has the fewest empty cells
+ * left, and within it the empty cell with the fewest candidates.  Boards
+ * without any clues fall back to minimum remaining values.
+ *
+ * @author Blake Batson
+ */
+public class ClueAwareSelector implements CellSelector {
+    /** The selector has no state, so one instance is shared */
+    public static final ClueAwareSelector INSTANCE = new ClueAwareSelector();
+
+    @Override
+    public int select(BitmaskConfig board) {
+        int size = board.getSize();
+        int[][] borders = board.getBorders();
+
+        // find the clued line closest to being finished
+        int bestLine = -1;
+        boolean bestIsRow = true;
+        int bestEmpty = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            int rowEmpty = board.emptyInRow(i);
+            if (rowEmpty > 0 && rowEmpty < bestEmpty
+                    && (borders[SkyscraperConfig.WEST][i] != 0 || borders[SkyscraperConfig.EAST][i] != 0)) {
+                bestLine = i;
+                bestIsRow = true;
+                bestEmpty = rowEmpty;
+            }
+            int colEmpty = board.emptyInColumn(i);
+            if (colEmpty > 0 && colEmpty < bestEmpty
+                    && (borders[SkyscraperConfig.NORTH][i] != 0 || borders[SkyscraperConfig.SOUTH][i] != 0)) {
+                bestLine = i;
+                bestIsRow = false;
+                bestEmpty = colEmpty;
+            }
+        }
+        if (bestLine < 0) {
+            return MrvSelector.INSTANCE.select(board);
+        }
+
+        // the most constrained empty cell of that line
+        int start = bestIsRow ? bestLine * size : bestLine;
+        int step = bestIsRow ? 1 : size;
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        for (int i = 0, at = start; i < size; i++, at += step) {
+            if (board.isEmpty(at)) {
+                int count = Integer.bitCount(board.candidates(at));
+                if (count < bestCount) {
+                    best = at;
+                    bestCount = count;
+                }
+            }
+        }
+        // a line whose givens repeat a value looks emptier than it is
+        return best >= 0 ? best : MrvSelector.INSTANCE.select(board);
+    }
+}
@@ -1,4 +1,9 @@
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The representation of a single configuration for a puzzle.
@@ -16,6 +21,38 @@ public interface Configuration {
      */
     public Collection<Configuration> getSuccessors();
     
+    /**
+     * Get the successors from the current one as they are needed.  A
+     * configuration that can build its successors lazily overrides
+     * successorSpliterator(); by default the whole collection is built
+     * up front.
+     *
+     * @return All successors, valid and invalid, in getSuccessors() order
+     */
+    public default Iterator<Configuration> successors() {
+        return Spliterators.iterator(successorSpliterator());
+    }
+
+    /**
+     * Get the successors from the current one as they are needed, in a
+     * form that can be split for a parallel stream.
+     *
+     * @return All successors, valid and invalid, in getSuccessors() order
+     */
+    public default Spliterator<Configuration> successorSpliterator() {
+        return getSuccessors().spliterator();
+    }
+
+    /**
+     * Get the successors from the current one as a stream.
+     *
+     * @param parallel should the stream be parallel?
+     * @return All successors, valid and invalid
+     */
+    public default Stream<Configuration> successorStream(boolean parallel) {
+        return StreamSupport.stream(successorSpliterator(), parallel);
+    }
+
     /**
      * Is the current configuration valid or not?
      * 
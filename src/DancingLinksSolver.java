@@ -0,0 +1,376 @@
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Solves a board as an exact cover problem with colors, using Knuth's
+ * Dancing Links (Algorithm C of The Art of Computer Programming 7.2.2.1).
+ *
+ * Every row and every column is a primary item that must be covered once.
+ * Every cell is a secondary item whose color is the value in it.  An option
+ * is one whole line, a permutation of 1..size that shows the line's
+ * borders and agrees with the cells already filled in, taken from
+ * LinePermutations:
+ *
+ *  row 2:    R2  c(2,0):3  c(2,1):1  c(2,2):4  c(2,3):2
+ *  column 0: C0  c(0,0):2  c(1,0):4  c(2,0):3  c(3,0):1
+ *
+ * Picking one option per row and per column with every cell getting the
+ * same color from its row and its column is exactly a solution: the lines
+ * are permutations, so the grid is a Latin square, and every line was
+ * chosen to show its borders.  The search always branches on the line
+ * with the fewest options left.
+ *
+ * A line without borders or filled cells has size! options, so this solver
+ * takes boards up to MAX_SIZE and works best when the borders are given.
+ *
+ * @author Blake Batson
+ */
+public class DancingLinksSolver implements Solver {
+    /** The largest board this solver takes */
+    public static final int MAX_SIZE = LinePermutations.MAX_SIZE;
+
+    /** Where the search is recorded, null when it is not */
+    private SearchMetrics metrics;
+
+    //The matrix of the board being solved, items 1..primary are the lines
+    //and the cells follow, nodes up to items are the item headers
+    private int size;
+    private int primary;
+    private int[] llink;        //Per primary item, the previous active primary item
+    private int[] rlink;        //Per primary item, the next active primary item
+    private int[] len;          //Per item, how many options are left in its list
+    private int[] top;          //Per node, its item, or minus the option number for a spacer
+    private int[] ulink;        //Per node, the node above it in its item's list
+    private int[] dlink;        //Per node, the node below it in its item's list
+    private int[] color;        //Per node, the value it gives its cell, 0 for a line, -1 once purified
+    private int[] choice;       //Per depth, the option chosen
+
+    /**
+     * Record every following search into a set of metrics.  A node is one
+     * choice of a line, a backtrack is a line with no option left that fits.
+     *
+     * @param metrics the metrics to add to, or null to stop recording
+     */
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given configuration.
+     *
+     * @param config A SkyscraperConfig or BitmaskConfig of at most MAX_SIZE
+     * @return A solution config, or empty if no solution
+     * @throws IllegalArgumentException if the board is of another kind or too large
+     * @throws CancellationException if the thread is interrupted during the search
+     */
+    @Override
+    public Optional<Configuration> solve(Configuration config) {
+        SkyscraperConfig board;
+        if (config instanceof SkyscraperConfig) {
+            board = (SkyscraperConfig) config;
+        } else if (config instanceof BitmaskConfig) {
+            board = ((BitmaskConfig) config).toSkyscraperConfig();
+        } else {
+            throw new IllegalArgumentException("can not encode " + config.getClass().getName());
+        }
+        if (board.getSize() > MAX_SIZE) {
+            throw new IllegalArgumentException("boards above " + MAX_SIZE + "x" + MAX_SIZE + " are not supported");
+        }
+        if (metrics != null) {
+            metrics.solve();
+        }
+
+        try {
+            if (!build(board) || !search(0)) {
+                return Optional.empty();
+            }
+            return Optional.of(solution(board));
+        } finally {
+            // let the matrix go, it can be large
+            llink = rlink = len = top = ulink = dlink = color = choice = null;
+        }
+    }
+
+    /**
+     * Build the matrix of a board.
+     *
+     * @return false if some line has no option, so there is no solution
+     */
+    private boolean build(SkyscraperConfig board) {
+        size = board.getSize();
+        primary = 2 * size;
+        int items = primary + size * size;
+        int[][] borders = board.getBorders();
+        LinePermutations lines = LinePermutations.of(size);
+
+        //Every line's options: rows first, then columns
+        int[][] options = new int[primary][];
+        int count = 0;
+        int[] filled = new int[size];
+        for (int line = 0; line < primary; line++) {
+            for (int i = 0; i < size; i++) {
+                filled[i] = board.getCell(cellY(line, i), cellX(line, i));
+            }
+            options[line] = line < size
+                    ? lines.matching(borders[SkyscraperConfig.WEST][line], borders[SkyscraperConfig.EAST][line], filled)
+                    : lines.matching(borders[SkyscraperConfig.NORTH][line - size],
+                            borders[SkyscraperConfig.SOUTH][line - size], filled);
+            if (options[line].length == 0) {
+                return false;
+            }
+            count += options[line].length;
+        }
+
+        int nodes = items + 2 + count * (size + 2);  //headers, a spacer, then each option and its spacer
+        llink = new int[primary + 1];
+        rlink = new int[primary + 1];
+        len = new int[items + 1];
+        top = new int[nodes];
+        ulink = new int[nodes];
+        dlink = new int[nodes];
+        color = new int[nodes];
+        choice = new int[primary];
+
+        //Headers, the primary items are linked in a circle through 0
+        for (int i = 0; i <= primary; i++) {
+            llink[i] = i == 0 ? primary : i - 1;
+            rlink[i] = i == primary ? 0 : i + 1;
+        }
+        for (int i = 1; i <= items; i++) {
+            ulink[i] = i;
+            dlink[i] = i;
+        }
+
+        //Options, each one followed by a spacer
+        int spacer = items + 1;
+        int option = 0;
+        for (int line = 0; line < primary; line++) {
+            for (int id : options[line]) {
+                int first = spacer + 1;
+                append(first, line + 1, 0);
+                for (int i = 0; i < size; i++) {
+                    int cell = cellY(line, i) * size + cellX(line, i);
+                    append(first + 1 + i, primary + 1 + cell, lines.value(id, i));
+                }
+                dlink[spacer] = first + size;
+                spacer = first + size + 1;
+                top[spacer] = -++option;
+                ulink[spacer] = first;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the row of the i-th cell of a line, rows first, then columns
+     */
+    private int cellY(int line, int i) {
+        return line < size ? line : i;
+    }
+
+    /**
+     * @return the column of the i-th cell of a line, rows first, then columns
+     */
+    private int cellX(int line, int i) {
+        return line < size ? i : line - size;
+    }
+
+    /**
+     * Put a node at the bottom of its item's list.
+     */
+    private void append(int node, int item, int value) {
+        top[node] = item;
+        color[node] = value;
+        ulink[node] = ulink[item];
+        dlink[node] = item;
+        dlink[ulink[item]] = node;
+        ulink[item] = node;
+        len[item]++;
+    }
+
+    /**
+     * Cover every line that is still open.
+     *
+     * @param depth how many lines have been chosen
+     * @return true once every line is covered, the choices are then a solution
+     */
+    private boolean search(int depth) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Search interrupted");
+        }
+        if (rlink[0] == 0) {
+            return true;
+        }
+        if (metrics != null) {
+            metrics.node(depth);
+        }
+
+        //Branch on the line with the fewest options left
+        int item = rlink[0];
+        for (int i = rlink[item]; i != 0 && len[item] > 1; i = rlink[i]) {
+            if (len[i] < len[item]) {
+                item = i;
+            }
+        }
+        if (len[item] == 0) {
+            if (metrics != null) {
+                metrics.backtrack();
+            }
+            return false;
+        }
+
+        cover(item);
+        for (int x = dlink[item]; x != item; x = dlink[x]) {
+            choice[depth] = x;
+            for (int p = x + 1; p != x; ) {
+                int j = top[p];
+                if (j <= 0) {
+                    p = ulink[p];
+                } else {
+                    commit(p, j);
+                    p++;
+                }
+            }
+            if (search(depth + 1)) {
+                return true;
+            }
+            for (int p = x - 1; p != x; ) {
+                int j = top[p];
+                if (j <= 0) {
+                    p = dlink[p];
+                } else {
+                    uncommit(p, j);
+                    p--;
+                }
+            }
+        }
+        uncover(item);
+        if (metrics != null) {
+            metrics.backtrack();
+        }
+        return false;
+    }
+
+    /**
+     * Take an item and every option that uses it out of the matrix.
+     */
+    private void cover(int item) {
+        for (int p = dlink[item]; p != item; p = dlink[p]) {
+            hide(p);
+        }
+        int l = llink[item];
+        int r = rlink[item];
+        rlink[l] = r;
+        llink[r] = l;
+    }
+
+    private void uncover(int item) {
+        int l = llink[item];
+        int r = rlink[item];
+        rlink[l] = item;
+        llink[r] = item;
+        for (int p = ulink[item]; p != item; p = ulink[p]) {
+            unhide(p);
+        }
+    }
+
+    /**
+     * Take the other nodes of the option of node p out of their items' lists.
+     */
+    private void hide(int p) {
+        for (int q = p + 1; q != p; ) {
+            int x = top[q];
+            if (x <= 0) {
+                q = ulink[q];
+            } else {
+                if (color[q] >= 0) {
+                    dlink[ulink[q]] = dlink[q];
+                    ulink[dlink[q]] = ulink[q];
+                    len[x]--;
+                }
+                q++;
+            }
+        }
+    }
+
+    private void unhide(int p) {
+        for (int q = p - 1; q != p; ) {
+            int x = top[q];
+            if (x <= 0) {
+                q = dlink[q];
+            } else {
+                if (color[q] >= 0) {
+                    dlink[ulink[q]] = q;
+                    ulink[dlink[q]] = q;
+                    len[x]++;
+                }
+                q--;
+            }
+        }
+    }
+
+    /**
+     * Node p of the chosen option covers its line, or fixes its cell's value.
+     */
+    private void commit(int p, int item) {
+        if (color[p] == 0) {
+            cover(item);
+        } else if (color[p] > 0) {
+            purify(p);
+        }
+    }
+
+    private void uncommit(int p, int item) {
+        if (color[p] == 0) {
+            uncover(item);
+        } else if (color[p] > 0) {
+            unpurify(p);
+        }
+    }
+
+    /**
+     * Fix the value of the cell of node p: the options that give the cell
+     * another value are hidden, the ones that agree are marked so they are
+     * not checked again.
+     */
+    private void purify(int p) {
+        int c = color[p];
+        int item = top[p];
+        for (int q = dlink[item]; q != item; q = dlink[q]) {
+            if (color[q] != c) {
+                hide(q);
+            } else if (q != p) {
+                color[q] = -1;
+            }
+        }
+    }
+
+    private void unpurify(int p) {
+        int c = color[p];
+        int item = top[p];
+        for (int q = ulink[item]; q != item; q = ulink[q]) {
+            if (color[q] < 0) {
+                color[q] = c;
+            } else if (q != p) {
+                unhide(q);
+            }
+        }
+    }
+
+    /**
+     * Fill in a copy of the board from the chosen lines.  Each cell still
+     * has its color in the line that fixed it first, the other line that
+     * crosses it was purified.
+     */
+    private SkyscraperConfig solution(SkyscraperConfig board) {
+        int[] grid = new int[size * size];
+        for (int depth = 0; depth < primary; depth++) {
+            for (int q = choice[depth] + 1; top[q] > 0; q++) {
+                if (color[q] > 0) {
+                    grid[top[q] - primary - 1] = color[q];
+                }
+            }
+        }
+        return new SkyscraperConfig(size, board.getBorders(), grid);
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * A configuration that keeps a hash of its grid up to date as values are
+ * placed, so a search can recognise a partial board it has seen before.
+ * Two configurations of the same board with the same grid have the same
+ * hash.
+ *
+ * @author Blake Batson
+ */
+public interface HashedConfiguration {
+    /**
+     * The Zobrist hash of the current grid.
+     *
+     * @return the hash
+     */
+    public long getHash();
+}
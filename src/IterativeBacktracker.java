@@ -0,0 +1,449 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+
+/**
+ * The in place search of Backtracker without the recursion.  The path from
+ * the initial board to the current one is kept in an explicit stack of
+ * frames, one per placed cell, each holding the cell, the value placed in
+ * it and the candidates not tried yet.  Because the whole search state is
+ * in those arrays the search can stop after any node and carry on later:
+ *
+ *  - run() and runFor() search for a number of nodes or a length of time
+ *    and return, so one thread can take turns between many searches
+ *    (see roundRobin()), and a search can be carried on by another thread.
+ *  - checkpoint() writes the stack to a file and resume() rebuilds the
+ *    search from it and a freshly read board, so a long solve survives the
+ *    process being stopped.
+ *
+ * The search visits the same nodes in the same order as solveInPlace().
+ * An instance is used by one thread at a time.
+ *
+ * @author Blake Batson
+ */
+public class IterativeBacktracker {
+    /** Where a search is */
+    public enum State { SEARCHING, SOLVED, NO_SOLUTION }
+
+    /** Identifies a checkpoint file */
+    private static final int MAGIC = 0x534b5943;
+
+    /** Checkpoint file layout version */
+    private static final int VERSION = 1;
+
+    private final MutableConfiguration board;
+    private final long boardHash;       //The hash of the initial board, 0 if it has none
+
+    private int[] cells;                //Per frame, the cell being filled
+    private int[] values;               //Per frame below the top, the value placed in the cell
+    private int[] left;                 //Per frame, the candidates not tried yet
+    private boolean[] searched;         //Per frame, was any value valid?
+    private int top;                    //Index of the frame being expanded, also the depth
+    private boolean entering = true;    //Has the board at depth top not been looked at yet?
+    private State state = State.SEARCHING;
+    private long nodes;
+    private boolean started;            //Has this instance searched yet?  Not saved
+
+    /** Where the search is recorded, null when it is not */
+    private SearchMetrics metrics;
+
+    /** Boards known to lead nowhere, null when they are not remembered */
+    private TranspositionTable table;
+
+    /**
+     * Start a search of a board.  Nothing is searched until run() is called.
+     *
+     * @param board a valid configuration, changed in place by the search
+     *  and left as the solution if one is found
+     */
+    public IterativeBacktracker(MutableConfiguration board) {
+        this.board = board;
+        this.boardHash = board instanceof HashedConfiguration ? ((HashedConfiguration) board).getHash() : 0;
+        this.cells = new int[16];
+        this.values = new int[16];
+        this.left = new int[16];
+        this.searched = new boolean[16];
+    }
+
+    /**
+     * Record the rest of the search into a set of metrics.
+     *
+     * @param metrics the metrics to add to, or null to stop recording
+     */
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Remember the boards the rest of the search proves have no solution
+     * below them, and skip them when they come up again.  Only used for
+     * boards that implement HashedConfiguration.
+     *
+     * @param table the dead ends of the board being solved, or null
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * @return where the search is
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the board being searched
+     */
+    public MutableConfiguration getBoard() {
+        return board;
+    }
+
+    /**
+     * @return how many nodes have been searched, including before a resume
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return how many cells the search has placed on the current path
+     */
+    public int getDepth() {
+        return top;
+    }
+
+    /**
+     * Search until the board is solved or proven to have no solution.
+     *
+     * @return true if a solution was found, false otherwise
+     * @throws CancellationException if the thread is interrupted during the search
+     */
+    public boolean solve() {
+        return run(Long.MAX_VALUE) == State.SOLVED;
+    }
+
+    /**
+     * Search for a while and then stop where the search is, so it can be
+     * carried on by the next call.
+     *
+     * @param nanos roughly how long to search for
+     * @return where the search is
+     * @throws CancellationException if the thread is interrupted during the search
+     */
+    public State runFor(long nanos) {
+        return run(Long.MAX_VALUE, System.nanoTime() + nanos);
+    }
+
+    /**
+     * Search a number of nodes and then stop where the search is, so it
+     * can be carried on by the next call.
+     *
+     * @param budget how many nodes to search at most
+     * @return where the search is
+     * @throws CancellationException if the thread is interrupted during the search
+     */
+    public State run(long budget) {
+        return run(budget, 0);
+    }
+
+    /**
+     * The search loop below run() and runFor().  The deadline is looked at
+     * before every node and every move, but only once one of them has been
+     * made, so every call makes progress however short the slice.
+     *
+     * @param budget how many nodes to search at most
+     * @param deadline System.nanoTime() to stop at, 0 for none
+     * @return where the search is
+     */
+    private State run(long budget, long deadline) {
+        boolean progressed = false;
+        if (!started) {
+            // a resumed search counts as a solve of its own
+            started = true;
+            if (metrics != null) {
+                metrics.solve();
+            }
+        }
+        while (state == State.SEARCHING && budget > 0) {
+            if (deadline != 0 && progressed && System.nanoTime() - deadline >= 0) {
+                break;
+            }
+            progressed = true;
+            if (entering) {
+                // look at the board at depth top for the first time
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Search interrupted");
+                }
+                entering = false;
+                budget--;
+                nodes++;
+                if (metrics != null) {
+                    metrics.node(top);
+                }
+                if (isKnownDeadEnd()) {
+                    backtrack();
+                    continue;
+                }
+                if (isGoal()) {
+                    state = State.SOLVED;
+                    break;
+                }
+                cells[top] = board.nextCell();
+                left[top] = board.candidates(cells[top]);
+                searched[top] = false;
+            }
+
+            if (left[top] == 0) {
+                // every value of this frame failed
+                deadEnd(searched[top]);
+                backtrack();
+                continue;
+            }
+            int value = Integer.numberOfTrailingZeros(left[top]) + 1;
+            left[top] &= left[top] - 1;
+            makeMove(cells[top], value);
+            if (isValid()) {
+                values[top] = value;
+                searched[top] = true;
+                push();
+            } else {
+                board.undoMove();
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Go down to the board just made by the top frame's move.
+     */
+    private void push() {
+        top++;
+        if (top == cells.length) {
+            cells = Arrays.copyOf(cells, 2 * top);
+            values = Arrays.copyOf(values, 2 * top);
+            left = Arrays.copyOf(left, 2 * top);
+            searched = Arrays.copyOf(searched, 2 * top);
+        }
+        entering = true;
+    }
+
+    /**
+     * Go back up to the frame whose move led to the current board, or end
+     * the search if the current board is the initial one.
+     */
+    private void backtrack() {
+        if (top == 0) {
+            state = State.NO_SOLUTION;
+        } else {
+            top--;
+            board.undoMove();
+        }
+    }
+
+    /**
+     * @return true if the transposition table has the current board as a dead end
+     */
+    private boolean isKnownDeadEnd() {
+        if (table != null && board instanceof HashedConfiguration
+                && table.isDeadEnd(((HashedConfiguration) board).getHash())) {
+            if (metrics != null) {
+                metrics.backtrack();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record that the search below the current board found no solution,
+     * as Backtracker does.
+     *
+     * @param searched was any successor valid and searched?
+     */
+    private void deadEnd(boolean searched) {
+        if (metrics != null) {
+            metrics.backtrack();
+        }
+        if (searched && table != null && board instanceof HashedConfiguration) {
+            table.storeDeadEnd(((HashedConfiguration) board).getHash());
+        }
+    }
+
+    /*
+     * The calls below are timed when metrics are being recorded.
+     */
+
+    private void makeMove(int cell, int value) {
+        if (metrics == null) {
+            board.makeMove(cell, value);
+            return;
+        }
+        long start = System.nanoTime();
+        board.makeMove(cell, value);
+        metrics.generated(1, System.nanoTime() - start);
+    }
+
+    private boolean isValid() {
+        if (metrics == null) {
+            return board.isValid();
+        }
+        long start = System.nanoTime();
+        boolean valid = board.isValid();
+        metrics.validated(valid, System.nanoTime() - start);
+        return valid;
+    }
+
+    private boolean isGoal() {
+        if (metrics == null) {
+            return board.isGoal();
+        }
+        long start = System.nanoTime();
+        boolean goal = board.isGoal();
+        metrics.goalChecked(System.nanoTime() - start);
+        return goal;
+    }
+
+    /**
+     * Save where the search is.  The file is written next to its final
+     * name and then moved over it, so a stop part way through a write
+     * leaves the previous checkpoint as it was.
+     *
+     * @param file where to write the checkpoint
+     * @throws IOException if the file can not be written
+     */
+    public void checkpoint(Path file) throws IOException {
+        Path partial = file.resolveSibling(file.getFileName() + ".part");
+        try (OutputStream stream = Files.newOutputStream(partial)) {
+            write(stream);
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Write where the search is to a stream.
+     *
+     * @param stream where to write, left open
+     * @throws IOException if the stream can not be written
+     */
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(boardHash);
+        out.writeByte(state.ordinal());
+        out.writeLong(nodes);
+        out.writeBoolean(entering);
+        out.writeInt(top);
+        int frames = entering ? top : top + 1;
+        for (int f = 0; f < frames; f++) {
+            out.writeInt(cells[f]);
+            out.writeInt(f < top ? values[f] : 0);
+            out.writeInt(left[f]);
+            out.writeBoolean(searched[f]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Carry on a search from a checkpoint file.
+     *
+     * @param board the board the search was started on, as it was before
+     *  the search started, e.g. read again from its file
+     * @param file the checkpoint
+     * @return the search, with the board back where the checkpoint left it
+     * @throws IOException if the file can not be read, is not a checkpoint
+     *  or was not made from this board
+     */
+    public static IterativeBacktracker resume(MutableConfiguration board, Path file) throws IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            return read(board, stream);
+        }
+    }
+
+    /**
+     * Carry on a search written by write().  Every move on the saved path is
+     * made again, in order, so the board gets back to exactly the same
+     * state, trail included.
+     *
+     * @param board the board the search was started on, as it was before
+     *  the search started
+     * @param stream where to read the search from, left open
+     * @return the search, with the board back where the search left it
+     * @throws IOException if the stream can not be read, is not a search
+     *  or was not made from this board
+     */
+    public static IterativeBacktracker read(MutableConfiguration board, InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a search checkpoint");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("unknown checkpoint version " + version);
+        }
+        IterativeBacktracker search = new IterativeBacktracker(board);
+        if (in.readLong() != search.boardHash) {
+            throw new IOException("checkpoint is for a different board");
+        }
+        int state = in.readByte();
+        if (state < 0 || state >= State.values().length) {
+            throw new IOException("bad search state " + state);
+        }
+        search.nodes = in.readLong();
+        search.entering = in.readBoolean();
+        int top = in.readInt();
+        if (top < 0) {
+            throw new IOException("bad search depth " + top);
+        }
+
+        int frames = search.entering ? top : top + 1;
+        for (int f = 0; f < frames; f++) {
+            search.cells[f] = in.readInt();
+            search.values[f] = in.readInt();
+            search.left[f] = in.readInt();
+            search.searched[f] = in.readBoolean();
+            if (f < top) {
+                board.makeMove(search.cells[f], search.values[f]);
+                if (!board.isValid()) {
+                    throw new IOException("checkpoint does not fit this board at depth " + f);
+                }
+                search.push();
+            }
+        }
+        search.entering = frames == top;
+        search.state = State.values()[state];
+        return search;
+    }
+
+    /**
+     * Take turns between searches on the calling thread, giving each one a
+     * slice of time until every one has finished.
+     *
+     * @param searches the searches to run, finished ones are skipped
+     * @param sliceNanos how long each turn is
+     * @return how many turns were taken in all
+     */
+    public static long roundRobin(Collection<IterativeBacktracker> searches, long sliceNanos) {
+        Queue<IterativeBacktracker> ready = new ArrayDeque<>(searches);
+        long turns = 0;
+        while (!ready.isEmpty()) {
+            IterativeBacktracker search = ready.remove();
+            if (search.runFor(sliceNanos) == State.SEARCHING) {
+                ready.add(search);
+            }
+            turns++;
+        }
+        return turns;
+    }
+}
@@ -0,0 +1,247 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Every way of filling one whole line of a board, indexed for checking
+ * partial lines exactly.  A line of a size n board is a permutation of
+ * 1..n; the permutations are numbered in lexicographic order and sets of
+ * them are kept as bitsets over those numbers.
+ *
+ * For each pair of borders (front, back) the table holds the set of
+ * permutations that show exactly those counts, and for each position and
+ * value the set of permutations with that value there.  A partial line is
+ * checked by intersecting the set for its borders with the sets for its
+ * filled cells and then looking at the few permutations that are left.
+ *
+ * Tables are made the first time a size is used, the border sets the
+ * first time a pair of borders is, and both are shared by every board and
+ * thread.  A size 9 table takes about 8MB, so sizes above MAX_SIZE are
+ * not supported.
+ *
+ * @author Blake Batson
+ */
+final class LinePermutations {
+    /** The largest line length with a table */
+    static final int MAX_SIZE = 9;
+
+    /** The table of each size, made when first needed */
+    private static final LinePermutations[] TABLES = new LinePermutations[MAX_SIZE + 1];
+
+    private final int size;         //The length of the line
+    private final int count;        //Number of permutations, size!
+    private final int words;        //Longs per bitset
+    private final byte[] values;    //Permutation id * size + position -> value
+    private final byte[] front;     //Permutation id -> towers visible from the start
+    private final byte[] back;      //Permutation id -> towers visible from the end
+    private final long[][] placed;  //Position * size + value - 1 -> permutations with value at position
+    private final AtomicReferenceArray<long[]> bordered;   //front * (size + 1) + back -> permutations showing them
+
+    /**
+     * The table for one line length.
+     *
+     * @param size the length of the line, 1..MAX_SIZE
+     * @return the shared table
+     */
+    static synchronized LinePermutations of(int size) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("no permutation table for size " + size);
+        }
+        if (TABLES[size] == null) {
+            TABLES[size] = new LinePermutations(size);
+        }
+        return TABLES[size];
+    }
+
+    private LinePermutations(int size) {
+        int count = 1;
+        for (int i = 2; i <= size; i++) {
+            count *= i;
+        }
+        this.size = size;
+        this.count = count;
+        this.words = (count + 63) / 64;
+        this.values = new byte[count * size];
+        this.front = new byte[count];
+        this.back = new byte[count];
+        this.placed = new long[size * size][words];
+        this.bordered = new AtomicReferenceArray<>((size + 1) * (size + 1));
+
+        byte[] line = new byte[size];
+        for (int i = 0; i < size; i++) {
+            line[i] = (byte) (i + 1);
+        }
+        for (int id = 0; id < count; id++) {
+            System.arraycopy(line, 0, values, id * size, size);
+            front[id] = (byte) visible(line, 0, 1);
+            back[id] = (byte) visible(line, size - 1, -1);
+            for (int i = 0; i < size; i++) {
+                placed[i * size + line[i] - 1][id >>> 6] |= 1L << id;
+            }
+            nextPermutation(line);
+        }
+    }
+
+    /**
+     * @return how many towers of a full line are visible walking from start
+     */
+    private static int visible(byte[] line, int start, int step) {
+        int count = 0;
+        int tallest = 0;
+        for (int i = start; i >= 0 && i < line.length; i += step) {
+            if (line[i] > tallest) {
+                count++;
+                tallest = line[i];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Rearrange a line into the next permutation in lexicographic order.
+     */
+    private static void nextPermutation(byte[] line) {
+        int i = line.length - 2;
+        while (i >= 0 && line[i] > line[i + 1]) {
+            i--;
+        }
+        if (i < 0) {
+            return;
+        }
+        int j = line.length - 1;
+        while (line[j] < line[i]) {
+            j--;
+        }
+        byte swap = line[i];
+        line[i] = line[j];
+        line[j] = swap;
+        for (int lo = i + 1, hi = line.length - 1; lo < hi; lo++, hi--) {
+            swap = line[lo];
+            line[lo] = line[hi];
+            line[hi] = swap;
+        }
+    }
+
+    /**
+     * The permutations that show a pair of borders.
+     *
+     * @param front the border at the start of the line, 0 for none
+     * @param back the border at the end of the line, 0 for none
+     * @return the set as a bitset, not a copy
+     */
+    long[] withBorders(int front, int back) {
+        int key = front * (size + 1) + back;
+        long[] set = bordered.get(key);
+        if (set == null) {
+            set = new long[words];
+            for (int id = 0; id < count; id++) {
+                if ((front == 0 || this.front[id] == front) && (back == 0 || this.back[id] == back)) {
+                    set[id >>> 6] |= 1L << id;
+                }
+            }
+            if (!bordered.compareAndSet(key, null, set)) {
+                set = bordered.get(key);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * @param id a permutation number
+     * @param position a position in the line
+     * @return the value of the permutation at that position
+     */
+    int value(int id, int position) {
+        return values[id * size + position];
+    }
+
+    /**
+     * The permutations that show a pair of borders and agree with the
+     * filled cells of a partial line.
+     *
+     * @param front the border at the start of the line, 0 for none
+     * @param back the border at the end of the line, 0 for none
+     * @param filled the value of each cell of the line, 0 for an empty cell
+     * @return the permutation numbers, in lexicographic order
+     */
+    int[] matching(int front, int back, int[] filled) {
+        long[] borders = withBorders(front, back);
+        int[] ids = new int[64];
+        int found = 0;
+        for (int w = 0; w < words; w++) {
+            long bits = borders[w];
+            for (int i = 0; i < size && bits != 0; i++) {
+                if (filled[i] != 0) {
+                    bits &= placed[i * size + filled[i] - 1][w];
+                }
+            }
+            for (; bits != 0; bits &= bits - 1) {
+                if (found == ids.length) {
+                    ids = Arrays.copyOf(ids, 2 * found);
+                }
+                ids[found++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return Arrays.copyOf(ids, found);
+    }
+
+    /**
+     * Find the values each empty cell of a partial line can still take.  A
+     * value is kept if some permutation showing the borders agrees with
+     * every filled cell, has candidate values in every empty cell and has
+     * that value in that cell.
+     *
+     * @param front the border at the start of the line, 0 for none
+     * @param back the border at the end of the line, 0 for none
+     * @param filled the value of each cell of the line, 0 for an empty cell
+     * @param candidates the candidates of each empty cell as a bitmask
+     *  (value v is bit v - 1), ignored for a filled cell
+     * @param support filled in with the values found for each empty cell,
+     *  a subset of its candidates
+     * @return false if no permutation fits, so the line can not be finished
+     */
+    boolean support(int front, int back, int[] filled, int[] candidates, int[] support) {
+        long[] borders = withBorders(front, back);
+        int emptyCells = 0;
+        for (int i = 0; i < size; i++) {
+            support[i] = 0;
+            if (filled[i] == 0) {
+                emptyCells++;
+            }
+        }
+
+        boolean found = false;
+        for (int w = 0; w < words; w++) {
+            long bits = borders[w];
+            for (int i = 0; i < size && bits != 0; i++) {
+                if (filled[i] != 0) {
+                    bits &= placed[i * size + filled[i] - 1][w];
+                }
+            }
+            for (; bits != 0; bits &= bits - 1) {
+                int at = ((w << 6) + Long.numberOfTrailingZeros(bits)) * size;
+                boolean fits = true;
+                for (int i = 0; i < size && fits; i++) {
+                    fits = filled[i] != 0 || (candidates[i] & 1 << (values[at + i] - 1)) != 0;
+                }
+                if (!fits) {
+                    continue;
+                }
+                found = true;
+                int complete = 0;
+                for (int i = 0; i < size; i++) {
+                    if (filled[i] == 0) {
+                        support[i] |= 1 << (values[at + i] - 1);
+                        if (support[i] == candidates[i]) {
+                            complete++;
+                        }
+                    }
+                }
+                if (complete == emptyCells) {
+                    //every candidate is supported, nothing can be removed
+                    return true;
+                }
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Minimum remaining values: picks the empty cell with the fewest
+ * candidates.  Ties go to the cell with the highest degree, the number of
+ * other empty cells in its row and column, since filling it constrains
+ * the most of the rest of the board.  A cell with no candidates is picked
+ * right away so the dead end is found without branching.
+ *
+ * @author Blake Batson
+ */
+public class MrvSelector implements CellSelector {
+    /** The selector has no state, so one instance is shared */
+    public static final MrvSelector INSTANCE = new MrvSelector();
+
+    @Override
+    public int select(BitmaskConfig board) {
+        int size = board.getSize();
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        int bestDegree = -1;
+        for (int y = 0; y < size; y++) {
+            int rowEmpty = board.emptyInRow(y);
+            if (rowEmpty == 0) {
+                continue;
+            }
+            for (int x = 0; x < size; x++) {
+                int at = y * size + x;
+                if (!board.isEmpty(at)) {
+                    continue;
+                }
+                int count = Integer.bitCount(board.candidates(at));
+                if (count > bestCount) {
+                    continue;
+                }
+                int degree = rowEmpty + board.emptyInColumn(x) - 2;
+                if (count < bestCount || degree > bestDegree) {
+                    best = at;
+                    bestCount = count;
+                    bestDegree = degree;
+                    if (count <= 1) {
+                        return best;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+}
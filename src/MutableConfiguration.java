@@ -0,0 +1,53 @@
+/**
+ * A configuration that the Backtracker changes in place instead of
+ * copying.  The search places a value in a cell, checks the board,
+ * recurses and then undoes the placement, so one board is used for the
+ * whole solve and nothing needs to be allocated per successor.
+ *
+ * Sets of values are passed around as bitmasks, value v is bit (v - 1).
+ *
+ * @author Blake Batson
+ */
+public interface MutableConfiguration {
+    /**
+     * Which cell should be filled next?
+     *
+     * @return the cell index, or -1 if every cell is filled
+     */
+    public int nextCell();
+
+    /**
+     * The values that may still be placed in a cell.
+     *
+     * @param cell a cell index
+     * @return the candidate values as a bitmask
+     */
+    public int candidates(int cell);
+
+    /**
+     * Place a value in an empty cell, remembering how to undo it.
+     *
+     * @param cell a cell index
+     * @param value the value to place
+     */
+    public void makeMove(int cell, int value);
+
+    /**
+     * Undo the most recent move that has not been undone yet.
+     */
+    public void undoMove();
+
+    /**
+     * Is the current board valid or not?
+     *
+     * @return true if valid; false otherwise
+     */
+    public boolean isValid();
+
+    /**
+     * Is the current board a goal?
+     *
+     * @return true if goal; false otherwise
+     */
+    public boolean isGoal();
+}
@@ -0,0 +1,247 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A backtracker that splits the search tree across cores.  The valid
+ * successors of every configuration above the cutoff depth become
+ * fork-join tasks, so idle workers steal whole subtrees from busy ones.
+ * Below the cutoff a task searches its subtree sequentially, in place
+ * when the configuration supports it.  As soon as any task reaches a
+ * goal every other task stops at its next node.
+ *
+ * @author Blake Batson
+ */
+public class ParallelBacktracker implements Solver {
+    /** How many workers search at once */
+    private final int parallelism;
+
+    /** Configurations shallower than this are split into tasks */
+    private final int cutoff;
+
+    /**
+     * Initialize a new parallel backtracker.
+     *
+     * @param parallelism How many worker threads to use
+     * @param cutoff Depth below which subtrees are searched sequentially
+     */
+    public ParallelBacktracker(int parallelism, int cutoff) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.cutoff = cutoff;
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given configuration.
+     *
+     * @param config A valid configuration
+     * @return A solution config, or empty if no solution
+     * @throws CancellationException if the thread is interrupted during the search
+     */
+    @Override
+    public Optional<Configuration> solve(Configuration config) {
+        AtomicReference<Configuration> found = new AtomicReference<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            await(pool.submit(new SearchTask(config, 0, found)), config, found);
+        } finally {
+            pool.shutdownNow();
+        }
+        return Optional.ofNullable(found.get());
+    }
+
+    /**
+     * Try find a solution with parallel streams instead of fork-join tasks.
+     * Above the cutoff depth the successors of a configuration are streamed
+     * in parallel, split by their spliterator, and each valid one is
+     * searched below; beneath it the search is sequential, as in solve().
+     * The streams run in this backtracker's own pool.
+     *
+     * @param config A valid configuration
+     * @return A solution config, or empty if no solution
+     * @throws CancellationException if the thread is interrupted during the search
+     */
+    public Optional<Configuration> solveWithStreams(Configuration config) {
+        AtomicReference<Configuration> found = new AtomicReference<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // streams started from a pool's worker run their tasks in that pool
+            await(pool.submit(() -> streamSearch(config, 0, found)), config, found);
+        } finally {
+            pool.shutdownNow();
+        }
+        return Optional.ofNullable(found.get());
+    }
+
+    /**
+     * Wait for the search to finish.  If the waiting thread is interrupted
+     * the workers are stopped the same way a solution stops them, by
+     * setting found, and the solve is abandoned.
+     *
+     * @param search The search running in the pool
+     * @param config The configuration being solved
+     * @param found Set once any search finds a solution
+     * @throws CancellationException if the thread is interrupted while waiting
+     */
+    private static void await(Future<?> search, Configuration config, AtomicReference<Configuration> found) {
+        try {
+            search.get();
+        } catch (InterruptedException e) {
+            // any value stops the workers at their next node
+            found.compareAndSet(null, config);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Search interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @param found Set once any search finds a solution
+     * @return true if the search should give up: a solution has been found,
+     *  or the worker was interrupted because the pool is shutting down
+     */
+    private static boolean stopped(AtomicReference<Configuration> found) {
+        return found.get() != null || Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * The search below solveWithStreams().
+     *
+     * @param config A valid configuration
+     * @param depth How many moves deep config is
+     * @param found Set once any search finds a solution
+     * @return true if a solution has been found, here or elsewhere
+     */
+    private boolean streamSearch(Configuration config, int depth, AtomicReference<Configuration> found) {
+        if (stopped(found)) {
+            return true;
+        }
+        if (depth < cutoff && !config.isGoal()) {
+            return config.successorStream(true)
+                    .filter(Configuration::isValid)
+                    .anyMatch(child -> streamSearch(child, depth + 1, found));
+        }
+        Configuration goal;
+        if (config instanceof MutableConfiguration) {
+            goal = searchInPlace((MutableConfiguration) config, found) ? config : null;
+        } else {
+            goal = search(config, found);
+        }
+        if (goal != null) {
+            found.compareAndSet(null, goal);
+        }
+        return found.get() != null;
+    }
+
+    /**
+     * Sequential copying search that gives up once a solution is found.
+     *
+     * @param current The configuration to search below
+     * @param found Set once any search finds a solution
+     * @return A solution config, or null if none was found
+     */
+    private Configuration search(Configuration current, AtomicReference<Configuration> found) {
+        if (stopped(found)) {
+            return null;
+        }
+        if (current.isGoal()) {
+            return current;
+        }
+        for (Iterator<Configuration> children = current.successors(); children.hasNext(); ) {
+            Configuration child = children.next();
+            if (child.isValid()) {
+                Configuration goal = search(child, found);
+                if (goal != null) {
+                    return goal;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sequential in place search that gives up once a solution is found.
+     *
+     * @param board The board to search, left as the solution if one is found
+     * @param found Set once any search finds a solution
+     * @return true if board is now a solution
+     */
+    private boolean searchInPlace(MutableConfiguration board, AtomicReference<Configuration> found) {
+        if (stopped(found)) {
+            return false;
+        }
+        if (board.isGoal()) {
+            return true;
+        }
+        int cell = board.nextCell();
+        for (int left = board.candidates(cell); left != 0; left &= left - 1) {
+            board.makeMove(cell, Integer.numberOfTrailingZeros(left) + 1);
+            if (board.isValid() && searchInPlace(board, found)) {
+                return true;
+            }
+            board.undoMove();
+        }
+        return false;
+    }
+
+    /**
+     * Searches the subtree below one configuration.
+     */
+    private class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Configuration config;
+        private final int depth;
+        private final AtomicReference<Configuration> found;
+
+        SearchTask(Configuration config, int depth, AtomicReference<Configuration> found) {
+            this.config = config;
+            this.depth = depth;
+            this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            if (stopped(found)) {
+                return;
+            }
+            if (depth >= cutoff) {
+                Configuration goal;
+                if (config instanceof MutableConfiguration) {
+                    goal = searchInPlace((MutableConfiguration) config, found) ? config : null;
+                } else {
+                    goal = search(config, found);
+                }
+                if (goal != null) {
+                    found.compareAndSet(null, goal);
+                }
+            } else if (config.isGoal()) {
+                found.compareAndSet(null, config);
+            } else {
+                List<SearchTask> tasks = new ArrayList<>();
+                for (Configuration child : config.getSuccessors()) {
+                    if (child.isValid()) {
+                        tasks.add(new SearchTask(child, depth + 1, found));
+                    }
+                }
+                invokeAll(tasks);
+            }
+        }
+    }
+}
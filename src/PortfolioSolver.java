@@ -0,0 +1,358 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Races several differently configured searches of one board and takes
+ * whichever answers first.  How long a search takes depends a lot on the
+ * order it fills cells and tries values in, and the order that is slow
+ * on one board is often fast on another, so running a few orders side by
+ * side cuts the worst cases down to the best of them.
+ *
+ * Every search is complete, so the first one to finish has the answer,
+ * solution or no solution, and the rest are cancelled.  The searches run
+ * in place on their own BitmaskConfig with propagation.  A transposition
+ * table may be shared by all of them: a board with no solution below it
+ * has none whatever the order.
+ *
+ * @author Blake Batson
+ */
+public class PortfolioSolver implements Solver {
+    /** Nodes a randomized search gets before its first restart */
+    private static final long FIRST_RESTART = 1 << 10;
+
+    /**
+     * The order a search tries the candidates of a cell in.
+     */
+    public enum ValueOrder {
+        /** 1 up to size, the order SkyscraperConfig uses */
+        ASCENDING,
+        /** size down to 1 */
+        DESCENDING,
+        /**
+         * Closest first to the height the borders suggest: a clue of c
+         * puts tall towers near its border when c is small and short ones
+         * when c is large, so the cell d steps in is guessed at
+         * size - c + 1 + d.  Cells without clues go ascending.
+         */
+        CLUE,
+        /**
+         * A random order at every node.  The search is restarted with a
+         * new order whenever it runs out of nodes, and the number of nodes
+         * doubles every time, so it still finishes.
+         */
+        RANDOM
+    }
+
+    /**
+     * One search of the portfolio: which cell it branches on and the order
+     * it tries the values in.
+     */
+    public static final class Strategy {
+        private final String name;
+        private final CellSelector selector;
+        private final ValueOrder order;
+        private final long seed;
+
+        /**
+         * @param name what to call the strategy in reports
+         * @param selector picks the cell to branch on
+         * @param order the order candidates are tried in
+         * @param seed seeds the random order, unused by the others
+         */
+        public Strategy(String name, CellSelector selector, ValueOrder order, long seed) {
+            this.name = name;
+            this.selector = selector;
+            this.order = order;
+            this.seed = seed;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /** Every strategy there is a thread for, best first */
+    private static final List<Strategy> DEFAULTS = Arrays.asList(
+            new Strategy("mrv/ascending", MrvSelector.INSTANCE, ValueOrder.ASCENDING, 0),
+            new Strategy("clue/clue", ClueAwareSelector.INSTANCE, ValueOrder.CLUE, 0),
+            new Strategy("mrv/descending", MrvSelector.INSTANCE, ValueOrder.DESCENDING, 0),
+            new Strategy("mrv/random", MrvSelector.INSTANCE, ValueOrder.RANDOM, 1),
+            new Strategy("rowmajor/ascending", RowMajorSelector.INSTANCE, ValueOrder.ASCENDING, 0),
+            new Strategy("mrv/clue", MrvSelector.INSTANCE, ValueOrder.CLUE, 0),
+            new Strategy("clue/random", ClueAwareSelector.INSTANCE, ValueOrder.RANDOM, 2),
+            new Strategy("clue/descending", ClueAwareSelector.INSTANCE, ValueOrder.DESCENDING, 0));
+
+    /** The searches to race */
+    private final List<Strategy> strategies;
+
+    /** Boards known to lead nowhere, null when they are not remembered */
+    private TranspositionTable table;
+
+    /** The strategy that answered the last solve, null before one has */
+    private volatile Strategy winner;
+
+    /**
+     * Initialize a portfolio with the built in strategies.
+     *
+     * @param threads how many strategies to race, each on its own thread;
+     *  at most getDefaultStrategies().size() are used
+     */
+    public PortfolioSolver(int threads) {
+        this(firstStrategies(threads));
+    }
+
+    /**
+     * Initialize a portfolio that races the given strategies, each on its
+     * own thread.
+     *
+     * @param strategies the searches to race
+     */
+    public PortfolioSolver(List<Strategy> strategies) {
+        if (strategies.isEmpty()) {
+            throw new IllegalArgumentException("a portfolio needs at least one strategy");
+        }
+        this.strategies = new ArrayList<>(strategies);
+    }
+
+    private static List<Strategy> firstStrategies(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        return DEFAULTS.subList(0, Math.min(threads, DEFAULTS.size()));
+    }
+
+    /**
+     * @return the built in strategies, in the order they are given threads
+     */
+    public static List<Strategy> getDefaultStrategies() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Remember the boards every following search proves have no solution
+     * below them, shared by all of the strategies.
+     *
+     * @param table the dead ends of the board being solved, or null
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * @return the strategy that answered the last solve, or null
+     */
+    public Strategy getWinner() {
+        return winner;
+    }
+
+    /**
+     * Race the strategies on a board.
+     *
+     * @param config A SkyscraperConfig or BitmaskConfig
+     * @return A solution config, or empty if no solution
+     * @throws IllegalArgumentException if the board is of another kind
+     * @throws CancellationException if the thread is interrupted while waiting
+     */
+    @Override
+    public Optional<Configuration> solve(Configuration config) {
+        SkyscraperConfig board;
+        if (config instanceof SkyscraperConfig) {
+            board = (SkyscraperConfig) config;
+        } else if (config instanceof BitmaskConfig) {
+            board = ((BitmaskConfig) config).toSkyscraperConfig();
+        } else {
+            throw new IllegalArgumentException("can not race " + config.getClass().getName());
+        }
+
+        List<Run> runs = new ArrayList<>();
+        for (Strategy strategy : strategies) {
+            runs.add(new Run(board, strategy));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(runs.size());
+        try {
+            // the first run to return wins, the others are interrupted
+            Run first = pool.invokeAny(runs);
+            winner = first.strategy;
+            return first.solved ? Optional.of(first.board) : Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Search interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * One strategy's search of its own copy of the board.
+     */
+    private class Run implements Callable<Run> {
+        private final Strategy strategy;
+        private final SkyscraperConfig initial;
+        private BitmaskConfig board;
+        private int[][] preferred;          //Per cell, every value in CLUE order
+        private Random random;
+        private long nodes;                 //Nodes searched since the last restart
+        private long limit = Long.MAX_VALUE;
+        private boolean aborted;            //Did the search run out of nodes
+        private boolean solved;
+
+        Run(SkyscraperConfig initial, Strategy strategy) {
+            this.initial = initial;
+            this.strategy = strategy;
+        }
+
+        @Override
+        public Run call() {
+            // set up on the run's own thread, propagating a large board takes a while
+            board = new BitmaskConfig(initial, true);
+            board.setCellSelector(strategy.selector);
+            board.enablePropagation();
+            if (strategy.order == ValueOrder.CLUE) {
+                preferred = preferred(initial);
+            } else if (strategy.order == ValueOrder.RANDOM) {
+                random = new Random(strategy.seed);
+                limit = FIRST_RESTART;
+            }
+            solved = search();
+            while (aborted) {
+                // every aborted search undid its moves, so this starts again from the top
+                aborted = false;
+                nodes = 0;
+                limit *= 2;
+                solved = search();
+            }
+            return this;
+        }
+
+        /**
+         * Search below the current board.
+         *
+         * @return true if the board is now a solution
+         */
+        private boolean search() {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Search interrupted");
+            }
+            if (++nodes > limit) {
+                aborted = true;
+                return false;
+            }
+            if (table != null && table.isDeadEnd(board.getHash())) {
+                return false;
+            }
+            if (board.isGoal()) {
+                return true;
+            }
+            boolean searched = false;
+            int cell = board.nextCell();
+            for (int left = board.candidates(cell); left != 0; ) {
+                int value = next(cell, left);
+                left &= ~(1 << (value - 1));
+                board.makeMove(cell, value);
+                if (board.isValid()) {
+                    searched = true;
+                    if (search()) {
+                        return true;
+                    }
+                }
+                board.undoMove();
+                if (aborted) {
+                    return false;
+                }
+            }
+            if (searched && table != null) {
+                table.storeDeadEnd(board.getHash());
+            }
+            return false;
+        }
+
+        /**
+         * @param cell the cell being filled
+         * @param left the candidates not tried yet, not empty
+         * @return the next value to try
+         */
+        private int next(int cell, int left) {
+            switch (strategy.order) {
+                case DESCENDING:
+                    return 32 - Integer.numberOfLeadingZeros(left);
+                case CLUE:
+                    for (int value : preferred[cell]) {
+                        if ((left & (1 << (value - 1))) != 0) {
+                            return value;
+                        }
+                    }
+                    throw new IllegalStateException("no candidate left");
+                case RANDOM:
+                    for (int skip = random.nextInt(Integer.bitCount(left)); skip > 0; skip--) {
+                        left &= left - 1;
+                    }
+                    return Integer.numberOfTrailingZeros(left) + 1;
+                default:
+                    return Integer.numberOfTrailingZeros(left) + 1;
+            }
+        }
+    }
+
+    /**
+     * Order the values of every cell by how close they are to the height
+     * its borders suggest, the average of size - c + 1 + d over its clues.
+     * Ties go to the taller value.
+     *
+     * @param board the board being solved
+     * @return per cell index, the values 1..size best first
+     */
+    private static int[][] preferred(SkyscraperConfig board) {
+        int size = board.getSize();
+        int[][] borders = board.getBorders();
+        int[][] orders = new int[size * size][];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int sum = 0;
+                int clues = 0;
+                int[] clue = {borders[SkyscraperConfig.NORTH][x], borders[SkyscraperConfig.EAST][y],
+                        borders[SkyscraperConfig.SOUTH][x], borders[SkyscraperConfig.WEST][y]};
+                int[] distance = {y, size - 1 - x, size - 1 - y, x};
+                for (int side = 0; side < 4; side++) {
+                    if (clue[side] != 0) {
+                        sum += Math.max(1, Math.min(size, size - clue[side] + 1 + distance[side]));
+                        clues++;
+                    }
+                }
+                // twice the target, so half way between two values stays exact
+                int target = clues == 0 ? 0 : 2 * sum / clues;
+                Integer[] values = new Integer[size];
+                for (int v = 1; v <= size; v++) {
+                    values[v - 1] = v;
+                }
+                Arrays.sort(values, (a, b) -> {
+                    int da = Math.abs(2 * a - target);
+                    int db = Math.abs(2 * b - target);
+                    return da != db ? Integer.compare(da, db) : Integer.compare(b, a);
+                });
+                int[] order = new int[size];
+                for (int i = 0; i < size; i++) {
+                    order[i] = values[i];
+                }
+                orders[y * size + x] = order;
+            }
+        }
+        return orders;
+    }
+}
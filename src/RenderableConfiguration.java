@@ -0,0 +1,29 @@
+import java.io.IOException;
+
+/**
+ * A configuration that can write itself straight to an Appendable, a
+ * Writer or StringBuilder for example, without building a String first.
+ * Printing many boards is then limited by the output, not by formatting.
+ *
+ * @author Blake Batson
+ */
+public interface RenderableConfiguration {
+    /**
+     * Write the board as toString() shows it, borders and all.
+     *
+     * @param out where to write
+     * @throws IOException if out can not be written
+     */
+    public void render(Appendable out) throws IOException;
+
+    /**
+     * Write the grid on one line for other programs to read: the size, a
+     * colon and then every cell in row-major order as one base 36 digit,
+     * 0 for an empty cell.  A solved 4x4 board looks like
+     * 4:2134432131421243
+     *
+     * @param out where to write, no line separator is added
+     * @throws IOException if out can not be written
+     */
+    public void renderCompact(Appendable out) throws IOException;
+}
@@ -0,0 +1,21 @@
+/**
+ * Picks the first empty cell from the top left to the bottom right, the
+ * order SkyscraperConfig always uses.
+ *
+ * @author Blake Batson
+ */
+public class RowMajorSelector implements CellSelector {
+    /** The selector has no state, so one instance is shared */
+    public static final RowMajorSelector INSTANCE = new RowMajorSelector();
+
+    @Override
+    public int select(BitmaskConfig board) {
+        int cells = board.getSize() * board.getSize();
+        for (int at = 0; at < cells; at++) {
+            if (board.isEmpty(at)) {
+                return at;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Checks the lines of a board one at a time, the fallback when the
+ * Vector API is not available.  It reads the same layout as VectorKernel,
+ * so the two can be compared on equal terms.
+ *
+ * @author Blake Batson
+ */
+public class ScalarKernel implements ValidationKernel {
+    /** The kernel has no state, so one instance is shared */
+    public static final ScalarKernel INSTANCE = new ScalarKernel();
+
+    @Override
+    public boolean isValid(int size, byte[] lines, byte[][] clues) {
+        int last = size - 1;
+        return valid(size, lines, 0, STRIDE, clues[SkyscraperConfig.NORTH])
+                && valid(size, lines, (size + last) * STRIDE, -STRIDE, clues[SkyscraperConfig.EAST])
+                && valid(size, lines, last * STRIDE, -STRIDE, clues[SkyscraperConfig.SOUTH])
+                && valid(size, lines, size * STRIDE, STRIDE, clues[SkyscraperConfig.WEST]);
+    }
+
+    /**
+     * Check the lines seen from one border.
+     *
+     * @param first the block nearest the border
+     * @param step the distance to the next block away from the border
+     * @param clues the border
+     */
+    private static boolean valid(int size, byte[] lines, int first, int step, byte[] clues) {
+        for (int lane = 0; lane < size; lane++) {
+            int clue = clues[lane];
+            if (clue == 0) {
+                continue;
+            }
+            int tallest = 0;
+            int count = 0;
+            int empty = 0;      //Empty cells before the tallest tower
+            int blanks = 0;     //Every empty cell
+            boolean past = false;
+            for (int at = first + lane, i = 0; i < size; at += step, i++) {
+                int current = lines[at];
+                if (current == 0) {
+                    blanks++;
+                    if (!past) {
+                        empty++;
+                    }
+                } else if (current > tallest) {
+                    count++;
+                    tallest = current;
+                    past = current == size;
+                }
+            }
+            if (blanks == 0 ? clue != count : clue > empty + count) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,360 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Splits one search across several processes.  The Backtracker's frontier
+ * at a chosen depth is listed as prefixes, the cells and values placed to
+ * reach each configuration on it, and SearchWorker processes take them
+ * from a shared queue one at a time and search below them.  As soon as a
+ * worker finds a solution every worker is stopped.  The workers are run
+ * on this machine, over a socket on the loopback address, but need nothing
+ * but the board file and the port.
+ *
+ * The SearchCoordinator class is run as:
+ *  $java SearchCoordinator [filename] [engine] [options...]
+ *       [filename]: The name of the board file
+ *       [engine] [options]: the search each worker runs, as for Skyscraper but without
+ *                 cache=FILE, plus
+ *                 workers=N         - how many worker processes to start (default: all cores)
+ *                 depth=N           - how many moves down the frontier is listed (default: 3)
+ *                 baseline          - also time the whole search in one worker process, to
+ *                                     report the speedup (skipped when listing the frontier
+ *                                     already ended the search)
+ *
+ * @author Blake Batson
+ */
+public class SearchCoordinator {
+    /** How long a worker has to start and connect */
+    private static final int CONNECT_MILLIS = 60_000;
+
+    private final String fileName;
+    private final String engine;
+    private final List<String> options;
+
+    /**
+     * What one distributed search found, and how the work was spread.
+     */
+    static final class Outcome {
+        /** The solution in the compact format, null if none was found */
+        String solution;
+        /** What went wrong, null if nothing did */
+        String error;
+        /** Per worker, how many prefixes it answered */
+        final int[] units;
+        /** Per worker, the time it spent searching, in nanoseconds */
+        final long[] busy;
+        /** From starting the workers to the answer, in nanoseconds */
+        long wallNanos;
+
+        Outcome(int workers) {
+            units = new int[workers];
+            busy = new long[workers];
+        }
+    }
+
+    /**
+     * Initialize a new coordinator.
+     *
+     * @param fileName the board file, which every worker reads
+     * @param engine which configuration the workers search with
+     * @param options the search options
+     */
+    public SearchCoordinator(String fileName, String engine, List<String> options) {
+        this.fileName = fileName;
+        this.engine = engine;
+        this.options = options;
+    }
+
+    /**
+     * List the frontier of a board as prefixes.  If the Backtracker already
+     * meets a solution above the depth, it is the last configuration listed.
+     *
+     * @param initial the board as read from its file
+     * @param depth how many moves down to list
+     * @param frontier filled with the configurations listed
+     * @return per configuration, the cells it has that the board does not
+     *  as cell=value pairs, or - if there are none
+     */
+    List<String> prefixes(SkyscraperConfig initial, int depth, List<Configuration> frontier) {
+        int[] givens = Skyscraper.grid(initial);
+        frontier.addAll(new Backtracker(false).frontier(Skyscraper.forEngine(initial, engine, options), depth));
+        List<String> prefixes = new ArrayList<>(frontier.size());
+        for (Configuration config : frontier) {
+            int[] cells = Skyscraper.grid(Skyscraper.asBoard(config));
+            StringBuilder prefix = new StringBuilder();
+            for (int at = 0; at < cells.length; at++) {
+                if (cells[at] != givens[at]) {
+                    prefix.append(prefix.length() == 0 ? "" : ",").append(at).append('=').append(cells[at]);
+                }
+            }
+            prefixes.add(prefix.length() == 0 ? "-" : prefix.toString());
+        }
+        return prefixes;
+    }
+
+    /**
+     * Hand prefixes out to worker processes until one finds a solution or
+     * every prefix is exhausted.
+     *
+     * @param prefixes the pieces of the search, in the order to hand them out
+     * @param workers how many worker processes to start
+     * @return what the workers found
+     * @throws IOException if the workers can not be started or reached
+     */
+    Outcome run(List<String> prefixes, int workers) throws IOException {
+        Outcome outcome = new Outcome(workers);
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<String> found = new AtomicReference<>();
+        AtomicReference<String> error = new AtomicReference<>();
+        List<Process> processes = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService handlers = Executors.newFixedThreadPool(workers);
+
+        long start = System.nanoTime();
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(CONNECT_MILLIS);
+            for (int i = 0; i < workers; i++) {
+                processes.add(new ProcessBuilder(command(server.getLocalPort()))
+                        .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start());
+            }
+
+            List<Future<?>> done = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                Socket socket = server.accept();
+                int worker = i;
+                done.add(handlers.submit(() -> {
+                    serve(socket, worker, prefixes, next, found, error, outcome);
+                    if (found.get() != null || error.get() != null) {
+                        // every other worker is searching a piece nobody needs any more
+                        processes.forEach(Process::destroy);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> handler : done) {
+                handler.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error.compareAndSet(null, "interrupted");
+        } catch (ExecutionException e) {
+            error.compareAndSet(null, e.getCause().toString());
+        } finally {
+            outcome.wallNanos = System.nanoTime() - start;
+            handlers.shutdownNow();
+            processes.forEach(Process::destroy);
+        }
+
+        outcome.solution = found.get();
+        outcome.error = error.get();
+        if (outcome.solution == null && outcome.error == null && next.get() < prefixes.size()) {
+            outcome.error = "the workers stopped before every prefix was searched";
+        }
+        return outcome;
+    }
+
+    /**
+     * Feed one worker prefixes until there are none left, a solution is
+     * found, something goes wrong, or the worker goes away.
+     */
+    private static void serve(Socket socket, int worker, List<String> prefixes, AtomicInteger next,
+            AtomicReference<String> found, AtomicReference<String> error, Outcome outcome) {
+        try (Socket connection = socket;
+                BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(),
+                        StandardCharsets.US_ASCII));
+                Writer out = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(),
+                        StandardCharsets.US_ASCII))) {
+            while (found.get() == null && error.get() == null) {
+                int id = next.getAndIncrement();
+                if (id >= prefixes.size()) {
+                    break;
+                }
+                out.write(id + "\t" + prefixes.get(id) + "\n");
+                out.flush();
+                String reply = in.readLine();
+                if (reply == null) {
+                    // stopped because another worker answered, or died
+                    if (found.get() == null) {
+                        error.compareAndSet(null, "worker " + (worker + 1) + " went away");
+                    }
+                    return;
+                }
+
+                // id, status, nanoseconds, then the solution or the error
+                String[] fields = reply.split("\t", 4);
+                synchronized (outcome) {
+                    outcome.units[worker]++;
+                    outcome.busy[worker] += Long.parseLong(fields[2]);
+                }
+                if (fields[1].equals(BatchSolver.Status.SOLVED.name())) {
+                    found.compareAndSet(null, fields[3]);
+                } else if (fields[1].equals(BatchSolver.Status.ERROR.name())) {
+                    error.compareAndSet(null, "prefix " + prefixes.get(id) + ": " + fields[3]);
+                }
+            }
+            out.write("QUIT\n");
+            out.flush();
+        } catch (IOException e) {
+            if (found.get() == null) {
+                error.compareAndSet(null, "worker " + (worker + 1) + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * @return the command line that starts a worker, with this JVM's own
+     *  options and class path
+     */
+    private List<String> command(int port) {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("SearchWorker");
+        command.add(Integer.toString(port));
+        command.add(fileName);
+        command.add(engine);
+        for (String option : options) {
+            // a cache file can only be open in one process, and each piece is a different board anyway
+            if (!option.startsWith("cache=") && !option.startsWith("cachesize=")) {
+                command.add(option);
+            }
+        }
+        return command;
+    }
+
+    /**
+     * Turn a solution in the compact format back into a board.
+     */
+    private static SkyscraperConfig board(SkyscraperConfig initial, String compact) {
+        int size = initial.getSize();
+        String digits = compact.substring(compact.indexOf(':') + 1);
+        int[] cells = new int[size * size];
+        for (int at = 0; at < cells.length; at++) {
+            cells[at] = Character.digit(digits.charAt(at), Character.MAX_RADIX);
+        }
+        return new SkyscraperConfig(size, initial.getBorders(), cells);
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    /**
+     * The main program.
+     * @param args command line arguments
+     * @throws IOException if the board can not be read or the workers can not be started
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java SearchCoordinator file [engine] [options...]");
+            return;
+        }
+        String fileName = args[0];
+        String engine = args.length > 1 ? args[1] : "classic";
+        List<String> options = Arrays.asList(args).subList(Math.min(2, args.length), args.length);
+        int workers = Runtime.getRuntime().availableProcessors();
+        int depth = 3;
+        for (String option : options) {
+            if (option.startsWith("workers=")) {
+                workers = Integer.parseInt(option.substring("workers=".length()));
+            } else if (option.startsWith("depth=")) {
+                depth = Integer.parseInt(option.substring("depth=".length()));
+            }
+        }
+        if (workers < 1 || depth < 0) {
+            System.err.println("workers must be at least 1 and depth at least 0");
+            return;
+        }
+
+        SearchCoordinator coordinator = new SearchCoordinator(fileName, engine, options);
+        SkyscraperConfig initial = BoardReader.readBoard(fileName);
+        System.out.println("File: " + fileName);
+        System.out.println("Engine: " + engine + (options.isEmpty() ? "" : " " + options));
+
+        long start = System.nanoTime();
+        List<Configuration> frontier = new ArrayList<>();
+        List<String> prefixes;
+        try {
+            prefixes = coordinator.prefixes(new SkyscraperConfig(initial), depth, frontier);
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        long listed = System.nanoTime() - start;
+        System.out.println("Frontier: " + prefixes.size() + " prefixes at depth " + depth
+                + ", listed in " + seconds(listed) + " seconds");
+
+        Outcome outcome;
+        if (frontier.isEmpty()) {
+            // every line of the search died out above the depth
+            outcome = new Outcome(0);
+            System.out.println("No solution");
+        } else if (frontier.get(frontier.size() - 1).isGoal()) {
+            // the search ended while the frontier was listed
+            outcome = new Outcome(0);
+            outcome.solution = prefixes.get(prefixes.size() - 1);
+            System.out.println("Solution:\n" + frontier.get(frontier.size() - 1));
+        } else {
+            outcome = coordinator.run(prefixes, Math.min(workers, prefixes.size()));
+            if (outcome.error != null) {
+                System.out.println("Error: " + outcome.error);
+            } else if (outcome.solution != null) {
+                System.out.println("Solution:\n" + board(initial, outcome.solution));
+            } else {
+                System.out.println("No solution");
+            }
+        }
+
+        // how evenly the prefixes kept the workers busy
+        long total = 0;
+        long busiest = 0;
+        for (int i = 0; i < outcome.units.length; i++) {
+            System.out.println("Worker " + (i + 1) + ": " + outcome.units[i] + " prefixes, busy "
+                    + seconds(outcome.busy[i]) + " seconds");
+            total += outcome.busy[i];
+            busiest = Math.max(busiest, outcome.busy[i]);
+        }
+        if (total > 0) {
+            System.out.printf("Balance: the busiest worker searched %.2f times the mean%n",
+                    busiest / ((double) total / outcome.units.length));
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println("Elapsed time: " + seconds(elapsed) + " seconds.");
+
+        if (options.contains("baseline") && outcome.units.length == 0) {
+            // no worker ran, so there is nothing to compare one process with
+            System.out.println("Single process: skipped, the search ended while the frontier was listed");
+        } else if (options.contains("baseline")) {
+            Outcome single = coordinator.run(Collections.singletonList("-"), 1);
+            if (single.error != null) {
+                System.out.println("Single process error: " + single.error);
+                return;
+            }
+            System.out.printf("Single process: %s seconds, speedup %.2f%n",
+                    seconds(single.wallNanos), (double) single.wallNanos / elapsed);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts what a search did: how many configurations it expanded, how many
+ * successors it made and how many of those isValid() threw away, how deep
+ * it went, how often it backtracked and how long it spent in each of
+ * getSuccessors(), isValid() and isGoal().
+ *
+ * A Backtracker only records into a SearchMetrics it has been given, so a
+ * search without one pays for a null check per call and nothing else.
+ * One instance is updated by one search thread at a time; use add() to
+ * collect the metrics of many searches into a shared total, which can be
+ * written out as JSON or registered with the platform MBean server.  The
+ * getters lock like add() does, so a total is read whole while it grows.
+ *
+ * @author Blake Batson
+ */
+public class SearchMetrics implements SearchMetricsMXBean {
+    private long solves;
+    private long nodes;
+    private long generated;
+    private long rejected;
+    private long backtracks;
+    private int maxDepth;
+    private long successorNanos;
+    private long validNanos;
+    private long goalNanos;
+
+    /**
+     * Record the start of a search.
+     */
+    void solve() {
+        solves++;
+    }
+
+    /**
+     * Record a configuration being expanded.
+     *
+     * @param depth how many moves deep the configuration is
+     */
+    void node(int depth) {
+        nodes++;
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    /**
+     * Record successors being created.
+     *
+     * @param count how many successors
+     * @param nanos how long creating them took
+     */
+    void generated(int count, long nanos) {
+        generated += count;
+        successorNanos += nanos;
+    }
+
+    /**
+     * Record one isValid() check.
+     *
+     * @param valid what the check returned
+     * @param nanos how long it took
+     */
+    void validated(boolean valid, long nanos) {
+        if (!valid) {
+            rejected++;
+        }
+        validNanos += nanos;
+    }
+
+    /**
+     * Record one isGoal() check.
+     *
+     * @param nanos how long it took
+     */
+    void goalChecked(long nanos) {
+        goalNanos += nanos;
+    }
+
+    /**
+     * Record an expanded configuration that led to no solution.
+     */
+    void backtrack() {
+        backtracks++;
+    }
+
+    /**
+     * Add the counters of another search to this one.  Safe to call from
+     * several threads at once.
+     *
+     * @param other the metrics of a finished search
+     */
+    public synchronized void add(SearchMetrics other) {
+        solves += other.solves;
+        nodes += other.nodes;
+        generated += other.generated;
+        rejected += other.rejected;
+        backtracks += other.backtracks;
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        successorNanos += other.successorNanos;
+        validNanos += other.validNanos;
+        goalNanos += other.goalNanos;
+    }
+
+    @Override
+    public synchronized void reset() {
+        solves = 0;
+        nodes = 0;
+        generated = 0;
+        rejected = 0;
+        backtracks = 0;
+        maxDepth = 0;
+        successorNanos = 0;
+        validNanos = 0;
+        goalNanos = 0;
+    }
+
+    /**
+     * Make these metrics visible over JMX.
+     *
+     * @param name the MBean object name, e.g. "skyscraper:type=SearchMetrics"
+     * @throws IllegalArgumentException if the name is malformed or already taken
+     */
+    public void register(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Can not register " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized long getSolves() {
+        return solves;
+    }
+
+    @Override
+    public synchronized long getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public synchronized long getGenerated() {
+        return generated;
+    }
+
+    @Override
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public synchronized double getPruningRate() {
+        return generated == 0 ? 0 : (double) rejected / generated;
+    }
+
+    @Override
+    public synchronized long getBacktracks() {
+        return backtracks;
+    }
+
+    @Override
+    public synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    @Override
+    public synchronized long getSuccessorNanos() {
+        return successorNanos;
+    }
+
+    @Override
+    public synchronized long getValidNanos() {
+        return validNanos;
+    }
+
+    @Override
+    public synchronized long getGoalNanos() {
+        return goalNanos;
+    }
+
+    /**
+     * The counters as a single line JSON object.
+     *
+     * @return the JSON text
+     */
+    public synchronized String toJson() {
+        return String.format(Locale.ROOT, "{\"solves\":%d,\"nodes\":%d,\"generated\":%d,\"rejected\":%d,"
+                        + "\"pruningRate\":%.4f,\"backtracks\":%d,\"maxDepth\":%d,"
+                        + "\"successorNanos\":%d,\"validNanos\":%d,\"goalNanos\":%d}",
+                solves, nodes, generated, rejected, getPruningRate(), backtracks, maxDepth,
+                successorNanos, validNanos, goalNanos);
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
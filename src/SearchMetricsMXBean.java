@@ -0,0 +1,61 @@
+/**
+ * The SearchMetrics counters as seen over JMX.
+ *
+ * @author Blake Batson
+ */
+public interface SearchMetricsMXBean {
+    /**
+     * @return how many searches have been recorded
+     */
+    public long getSolves();
+
+    /**
+     * @return configurations the search expanded
+     */
+    public long getNodes();
+
+    /**
+     * @return successors created, valid or not
+     */
+    public long getGenerated();
+
+    /**
+     * @return successors that failed isValid()
+     */
+    public long getRejected();
+
+    /**
+     * @return the fraction of generated successors that were rejected
+     */
+    public double getPruningRate();
+
+    /**
+     * @return expanded configurations that led to no solution
+     */
+    public long getBacktracks();
+
+    /**
+     * @return the deepest configuration expanded
+     */
+    public int getMaxDepth();
+
+    /**
+     * @return nanoseconds spent creating successors
+     */
+    public long getSuccessorNanos();
+
+    /**
+     * @return nanoseconds spent in isValid()
+     */
+    public long getValidNanos();
+
+    /**
+     * @return nanoseconds spent in isGoal()
+     */
+    public long getGoalNanos();
+
+    /**
+     * Set every counter back to zero.
+     */
+    public void reset();
+}
@@ -0,0 +1,113 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * One process of a SearchCoordinator search.  It connects back to the
+ * coordinator and searches the pieces of the board it is handed, one at a
+ * time, until the coordinator has no more or closes the connection.  The
+ * coordinator starts the workers itself, as:
+ *  $java SearchWorker [port] [filename] [engine] [options...]
+ *       [port]: the coordinator's port on the loopback address
+ *       [filename]: the board file
+ *       [engine] [options]: the search to run on each piece, as for Skyscraper
+ *
+ * Every piece is a prefix: one line of its id, a tab, and the cells the
+ * search placed to get there as cell=value pairs, e.g. 0=2,1=4, or - if
+ * there are none.  The worker fills the prefix into the board and searches the
+ * rest, and answers with one line in BatchSolver's compact format, with
+ * the id in place of the file: SOLVED and the solution, NO_SOLUTION once
+ * the piece is exhausted, or ERROR and what went wrong.
+ *
+ * @author Blake Batson
+ */
+public class SearchWorker {
+    private SearchWorker() {
+    }
+
+    /**
+     * Fill a prefix into a board.
+     *
+     * @param board the board as read from its file
+     * @param prefix cell=value pairs separated by commas, or -
+     * @return the board with the prefix filled in
+     * @throws IllegalArgumentException if the prefix is malformed
+     */
+    static SkyscraperConfig apply(SkyscraperConfig board, String prefix) {
+        int[] cells = Skyscraper.grid(board);
+        if (!prefix.equals("-")) {
+            for (String move : prefix.split(",")) {
+                int split = move.indexOf('=');
+                if (split < 0) {
+                    throw new IllegalArgumentException("not a cell=value pair: " + move);
+                }
+                cells[Integer.parseInt(move.substring(0, split))] = Integer.parseInt(move.substring(split + 1));
+            }
+        }
+        return new SkyscraperConfig(board.getSize(), board.getBorders(), cells);
+    }
+
+    /**
+     * Search one piece of the board.
+     *
+     * @return the answer line, without the id
+     */
+    private static String search(SkyscraperConfig board, String prefix, String engine, List<String> options) {
+        long start = System.nanoTime();
+        StringBuilder line = new StringBuilder();
+        try {
+            Configuration config = Skyscraper.forEngine(apply(board, prefix), engine, options);
+            Optional<Configuration> solution = Skyscraper.solve(config, options, false);
+            long nanos = System.nanoTime() - start;
+            if (solution.isPresent()) {
+                line.append(BatchSolver.Status.SOLVED).append('\t').append(nanos).append('\t');
+                Skyscraper.print(line, solution.get(), true);
+            } else {
+                line.append(BatchSolver.Status.NO_SOLUTION).append('\t').append(nanos).append("\t-");
+            }
+        } catch (RuntimeException | StackOverflowError | IOException e) {
+            line.setLength(0);
+            line.append(BatchSolver.Status.ERROR).append('\t').append(System.nanoTime() - start)
+                    .append('\t').append(e);
+        }
+        return line.toString();
+    }
+
+    /**
+     * The main program.
+     * @param args command line arguments
+     * @throws IOException if the board can not be read or the coordinator goes away
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java SearchWorker port file [engine] [options...]");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        SkyscraperConfig board = BoardReader.readBoard(args[1]);
+        String engine = args.length > 2 ? args[2] : "classic";
+        List<String> options = Arrays.asList(args).subList(Math.min(3, args.length), args.length);
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                        StandardCharsets.US_ASCII));
+                Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                        StandardCharsets.US_ASCII))) {
+            for (String line = in.readLine(); line != null && !line.equals("QUIT"); line = in.readLine()) {
+                int tab = line.indexOf('\t');
+                String id = line.substring(0, tab);
+                out.write(id + "\t" + search(board, line.substring(tab + 1), engine, options) + "\n");
+                out.flush();
+            }
+        }
+    }
+}
@@ -1,44 +1,125 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.File;
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Tha main Skyscraper class is run as:
- *  $java Skyscraper [filename] [debug]
+ *  $java Skyscraper [filename] [debug] [engine] [options...]
  *       [filename]: The name of the board file
  *       [debug]: true or false for debug output
+ *       [engine]: optional, which configuration to search with
+ *                 classic (default) - SkyscraperConfig
+ *                 bitmask           - BitmaskConfig
+ *       [options]: optional, for the bitmask engine
+ *                 incremental       - only recheck the lines through the placed cell
+ *                 inplace           - search one board in place instead of copying
+ *                 propagate         - prune candidates before the search and after every placement
+ *                 order=ORDER       - which empty cell to fill next: rowmajor (default),
+ *                                     mrv (fewest candidates) or clue (finish clued lines first)
+ *                 iterative         - search in place with an explicit stack instead of recursion
+ *                 checkpoint=FILE   - with iterative, save the search to FILE every second and
+ *                                     carry on from FILE if it is there; deleted once the search ends
+ *       [options]: optional, for the classic engine
+ *                 kernel=KERNEL     - check the lines of every board side by side: scalar, or vector
+ *                                     with the Vector API (run with --add-modules jdk.incubator.vector
+ *                                     and VectorKernel from src-vector on the class path, else scalar)
+ *       [options]: optional, for any engine
+ *                 parallel          - split the search across cores
+ *                 threads=N         - number of parallel workers (default: all cores)
+ *                 cutoff=N          - depth below which parallel workers stop splitting (default: 3)
+ *                 streams           - with parallel, split the search with parallel streams of
+ *                                     successors instead of fork-join tasks
+ *                 count             - count every solution instead of stopping at the first
+ *                 unique            - check the board has exactly one solution (stops at 2)
+ *                 limit=N           - stop counting after N solutions
+ *                 print             - print each solution as it is counted
+ *                 compact           - with print, print each solution on one line as the size, a
+ *                                     colon and one base 36 digit per cell, e.g. 4:2134432131421243
+ *                 metrics           - print search counters and timings as JSON (not with parallel)
+ *                 solver=SOLVER     - backtrack (default) searches the engine's configurations,
+ *                                     dlx solves the board as an exact cover problem with Dancing
+ *                                     Links (boards up to 9x9, whatever the engine), portfolio
+ *                                     races up to threads=N searches with different cell and value
+ *                                     orders and takes the first answer (whatever the engine)
+ *                 memo[=N]          - remember up to N (default: 1048576) partial boards with no
+ *                                     solution and skip them when they come up again (not with a
+ *                                     parallel solve, but with a parallel count)
+ *                 cache=FILE        - look the board up in a solution cache file first, in any
+ *                                     rotation or mirror image, and store its answer there once
+ *                                     solved; the file is created if needed.  Boards are looked
+ *                                     up as the engine set them up, so propagate fills in cells
+ *                                     and its boards do not match the other engines'
+ *                 cachesize=N       - how many boards a new cache file holds (default: 65536)
  *
  *  @author RIT CS
  */
 public class Skyscraper {
+    /** How often the checkpoint option saves the search */
+    private static final long CHECKPOINT_NANOS = 1_000_000_000L;
+
+    /** Every solution cache opened so far, by file, shared by all solves */
+    private static final Map<Path, SolutionCache> CACHES = new ConcurrentHashMap<>();
+
     /** 
      * The main program.
      * @param args command line arguments
      * @throws FileNotFoundException if file not found
      */
     public static void main(String[] args) throws FileNotFoundException {
-        if (args.length != 2) {
-            System.err.println("Usage: java Skyscraper file debug");
+        if (args.length < 2) {
+            System.err.println("Usage: java Skyscraper file debug [engine] [options...]");
         } else {
             // pass scanner object to constructor to read initial board
             String fileName = args[0];
-            SkyscraperConfig initConfig = new SkyscraperConfig(fileName);
+            String engine = args.length > 2 ? args[2] : "classic";
+            List<String> options = Arrays.asList(args).subList(Math.min(3, args.length), args.length);
+            Configuration initConfig;
+            try {
+                initConfig = readBoard(fileName, engine, options);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
 
             boolean debug = args[1].equals("true");
             System.out.println("File: " + fileName);
             System.out.println("Debug: " + debug);
+            System.out.println("Engine: " + engine + (options.isEmpty() ? "" : " " + options));
             System.out.println("Initial config:");
             System.out.println(initConfig);
 
-            // create the backtracker with the debug flag
-            Backtracker bt = new Backtracker(debug);
-
             // start the clock
             double start = System.currentTimeMillis();
 
+            if (options.contains("count") || options.contains("unique")
+                    || stringOption(options, "limit", null) != null) {
+                count(initConfig, options, start);
+                return;
+            }
+
             // solve the puzzle
-            Optional<Configuration> solution = bt.solve(initConfig);
+            SearchMetrics metrics = options.contains("metrics") ? new SearchMetrics() : null;
+            TranspositionTable table = transpositionTable(options);
+            Optional<Configuration> solution;
+            try {
+                solution = solve(initConfig, options, debug, metrics, table);
+            } catch (IllegalArgumentException | UncheckedIOException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
 
             // compute the elapsed time
             double elapsed = (System.currentTimeMillis() - start) / 1000.0;
@@ -50,7 +131,376 @@ public class Skyscraper {
                 System.out.println("No solution");
             }
 
+            if (initConfig instanceof BitmaskConfig && options.contains("propagate")) {
+                System.out.println("Nodes skipped by propagation: "
+                        + ((BitmaskConfig) initConfig).getForcedCount());
+            }
+            if (metrics != null && metrics.getSolves() > 0) {
+                System.out.println("Metrics: " + metrics.toJson());
+            }
+            if (table != null) {
+                System.out.println("Transposition table: " + table);
+            }
+            SolutionCache cache = solutionCache(options);
+            if (cache != null) {
+                System.out.println("Solution cache: " + cache);
+            }
             System.out.println("Elapsed time: " + elapsed + " seconds.");
         }
     }
+
+    /**
+     * Read the initial board for an engine.
+     *
+     * @param fileName the name of the board file
+     * @param engine which configuration to search with
+     * @param options the engine options
+     * @return the initial configuration
+     * @throws FileNotFoundException if file not found
+     * @throws IllegalArgumentException if the engine is unknown
+     */
+    static Configuration readBoard(String fileName, String engine, List<String> options)
+            throws FileNotFoundException {
+        return forEngine(BoardReader.readBoard(fileName), engine, options);
+    }
+
+    /**
+     * Set up a board that has already been read for an engine.
+     *
+     * @param initial the board as read from its file
+     * @param engine which configuration to search with
+     * @param options the engine options
+     * @return the initial configuration
+     * @throws IllegalArgumentException if the engine is unknown
+     */
+    static Configuration forEngine(SkyscraperConfig initial, String engine, List<String> options) {
+        if (engine.equals("classic")) {
+            String kernel = stringOption(options, "kernel", null);
+            if (kernel != null) {
+                initial.setKernel(ValidationKernel.forName(kernel));
+            }
+            return initial;
+        } else if (engine.equals("bitmask")) {
+            BitmaskConfig board = new BitmaskConfig(initial, options.contains("incremental"));
+            String order = stringOption(options, "order", "rowmajor");
+            if (order.equals("mrv")) {
+                board.setCellSelector(MrvSelector.INSTANCE);
+            } else if (order.equals("clue")) {
+                board.setCellSelector(ClueAwareSelector.INSTANCE);
+            } else if (!order.equals("rowmajor")) {
+                throw new IllegalArgumentException("Unknown cell order: " + order);
+            }
+            if (options.contains("propagate")) {
+                board.enablePropagation();
+            }
+            return board;
+        }
+        throw new IllegalArgumentException("Unknown engine: " + engine);
+    }
+
+    /**
+     * Solve a board with the search the options ask for.
+     *
+     * @param initConfig the initial configuration
+     * @param options the search options
+     * @param debug is debugging output enabled?
+     * @return A solution config, or empty if no solution
+     */
+    static Optional<Configuration> solve(Configuration initConfig, List<String> options, boolean debug) {
+        return solve(initConfig, options, debug, null);
+    }
+
+    /**
+     * Solve a board with the search the options ask for, recording what a
+     * sequential search does.
+     *
+     * @param initConfig the initial configuration
+     * @param options the search options
+     * @param debug is debugging output enabled?
+     * @param metrics where to record the search, or null; a parallel
+     *  search is not recorded
+     * @return A solution config, or empty if no solution
+     */
+    static Optional<Configuration> solve(Configuration initConfig, List<String> options, boolean debug,
+            SearchMetrics metrics) {
+        return solve(initConfig, options, debug, metrics, transpositionTable(options));
+    }
+
+    /**
+     * Solve a board with the search the options ask for, recording what a
+     * sequential search does and which boards it proves are dead ends.
+     *
+     * @param initConfig the initial configuration
+     * @param options the search options
+     * @param debug is debugging output enabled?
+     * @param metrics where to record the search, or null; a parallel
+     *  search is not recorded
+     * @param table the dead ends of this board, or null; not used by a
+     *  parallel search
+     * @return A solution config, or empty if no solution
+     * @throws UncheckedIOException if the solution cache can not be opened
+     */
+    static Optional<Configuration> solve(Configuration initConfig, List<String> options, boolean debug,
+            SearchMetrics metrics, TranspositionTable table) {
+        SolutionCache cache = solutionCache(options);
+        SkyscraperConfig board = cache == null ? null : asBoard(initConfig);
+        if (board == null) {
+            return search(initConfig, options, debug, metrics, table);
+        }
+
+        // a board seen before in any orientation is answered without a search
+        CanonicalBoard canonical = CanonicalBoard.of(board);
+        int[] known = cache.get(canonical);
+        if (known == SolutionCache.NONE) {
+            return Optional.empty();
+        } else if (known != null) {
+            return Optional.of(new SkyscraperConfig(board.getSize(), board.getBorders(), canonical.toQueried(known)));
+        }
+        Optional<Configuration> solution = search(initConfig, options, debug, metrics, table);
+        cache.put(canonical, solution.map(goal -> canonical.toCanonical(grid(asBoard(goal)))).orElse(null));
+        return solution;
+    }
+
+    /**
+     * Solve a board with the search the options ask for, without the
+     * solution cache.
+     */
+    private static Optional<Configuration> search(Configuration initConfig, List<String> options, boolean debug,
+            SearchMetrics metrics, TranspositionTable table) {
+        String solver = stringOption(options, "solver", "backtrack");
+        if (solver.equals("dlx")) {
+            DancingLinksSolver dlx = new DancingLinksSolver();
+            dlx.setMetrics(metrics);
+            return dlx.solve(initConfig);
+        } else if (solver.equals("portfolio")) {
+            PortfolioSolver portfolio = new PortfolioSolver(
+                    intOption(options, "threads", Runtime.getRuntime().availableProcessors()));
+            portfolio.setTranspositionTable(table);
+            Optional<Configuration> solution = portfolio.solve(initConfig);
+            if (debug) {
+                System.out.println("Portfolio winner: " + portfolio.getWinner());
+            }
+            return solution;
+        } else if (!solver.equals("backtrack")) {
+            throw new IllegalArgumentException("Unknown solver: " + solver);
+        }
+        if (options.contains("parallel")) {
+            int threads = intOption(options, "threads", Runtime.getRuntime().availableProcessors());
+            int cutoff = intOption(options, "cutoff", 3);
+            ParallelBacktracker backtracker = new ParallelBacktracker(threads, cutoff);
+            return options.contains("streams") ? backtracker.solveWithStreams(initConfig)
+                    : backtracker.solve(initConfig);
+        }
+
+        // create the backtracker with the debug flag
+        Backtracker bt = new Backtracker(debug);
+        bt.setMetrics(metrics);
+        bt.setTranspositionTable(table);
+        if (options.contains("iterative") && initConfig instanceof MutableConfiguration) {
+            boolean found = solveIteratively((MutableConfiguration) initConfig,
+                    stringOption(options, "checkpoint", null), metrics, table);
+            return found ? Optional.of(initConfig) : Optional.empty();
+        }
+        if (options.contains("inplace") && initConfig instanceof MutableConfiguration) {
+            boolean found = bt.solveInPlace((MutableConfiguration) initConfig);
+            return found ? Optional.of(initConfig) : Optional.empty();
+        }
+        return bt.solve(initConfig);
+    }
+
+    /**
+     * Solve a board in place with an explicit stack, saving the search to a
+     * checkpoint file as it goes when asked to.  If the file is already
+     * there the search carries on from it, so a solve that was stopped
+     * only repeats the work done since the last checkpoint.
+     *
+     * @param board the initial board
+     * @param checkpoint the checkpoint file, or null for none
+     * @param metrics where to record the search, or null
+     * @param table the dead ends of this board, or null
+     * @return true if a solution was found, board is left as the solution
+     * @throws UncheckedIOException if the checkpoint can not be read or written
+     */
+    private static boolean solveIteratively(MutableConfiguration board, String checkpoint,
+            SearchMetrics metrics, TranspositionTable table) {
+        try {
+            Path file = checkpoint == null ? null : Paths.get(checkpoint);
+            IterativeBacktracker search = file != null && Files.exists(file)
+                    ? IterativeBacktracker.resume(board, file) : new IterativeBacktracker(board);
+            search.setMetrics(metrics);
+            search.setTranspositionTable(table);
+            if (file == null) {
+                return search.solve();
+            }
+            while (search.runFor(CHECKPOINT_NANOS) == IterativeBacktracker.State.SEARCHING) {
+                search.checkpoint(file);
+            }
+            Files.deleteIfExists(file);
+            return search.getState() == IterativeBacktracker.State.SOLVED;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Count the solutions of a board and report how many there are.
+     *
+     * @param initConfig the initial configuration
+     * @param options the search options
+     * @param start when the clock was started
+     */
+    private static void count(Configuration initConfig, List<String> options, double start) {
+        boolean unique = options.contains("unique");
+        long limit = unique ? 2 : Long.parseLong(stringOption(options, "limit", Long.toString(Long.MAX_VALUE)));
+        int threads = intOption(options, "threads", options.contains("parallel")
+                ? Runtime.getRuntime().availableProcessors() : 1);
+        int cutoff = intOption(options, "cutoff", 3);
+        SolutionCounter counter = new SolutionCounter(threads, cutoff);
+        TranspositionTable table = transpositionTable(options);
+        counter.setTranspositionTable(table);
+
+        long solutions;
+        if (options.contains("print")) {
+            // solutions are written straight into one buffer and flushed when it fills
+            boolean compact = options.contains("compact");
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+            try {
+                solutions = counter.count(initConfig, limit, solution -> {
+                    try {
+                        if (!compact) {
+                            out.write("Solution:" + System.lineSeparator());
+                        }
+                        print(out, solution, compact);
+                        out.write(System.lineSeparator());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            solutions = counter.count(initConfig, limit, null);
+        }
+        double elapsed = (System.currentTimeMillis() - start) / 1000.0;
+
+        if (unique) {
+            System.out.println("Unique: " + (solutions == 1));
+        }
+        System.out.println("Solutions: " + solutions + (solutions == limit ? " (limit reached)" : ""));
+        if (table != null) {
+            System.out.println("Transposition table: " + table);
+        }
+        System.out.println("Elapsed time: " + elapsed + " seconds.");
+    }
+
+    /**
+     * Write a board without building a String for it when it can render itself.
+     *
+     * @param out where to write
+     * @param config the board
+     * @param compact write the one line form of RenderableConfiguration.renderCompact()?
+     *  Boards that can not render themselves are written as toString() either way.
+     * @throws IOException if out can not be written
+     */
+    static void print(Appendable out, Configuration config, boolean compact) throws IOException {
+        if (!(config instanceof RenderableConfiguration)) {
+            out.append(config.toString());
+        } else if (compact) {
+            ((RenderableConfiguration) config).renderCompact(out);
+        } else {
+            ((RenderableConfiguration) config).render(out);
+        }
+    }
+
+    /**
+     * Make the transposition table the memo option asks for.
+     *
+     * @param options the search options
+     * @return a new empty table, or null if dead ends are not remembered
+     */
+    static TranspositionTable transpositionTable(List<String> options) {
+        if (options.contains("memo")) {
+            return new TranspositionTable(1 << 20);
+        }
+        String capacity = stringOption(options, "memo", null);
+        return capacity == null ? null : new TranspositionTable(Integer.parseInt(capacity));
+    }
+
+    /**
+     * Open the solution cache the cache option asks for.  Each file is
+     * opened once and shared by every solve after that.
+     *
+     * @param options the search options
+     * @return the cache, or null if solutions are not cached
+     * @throws UncheckedIOException if the file can not be opened as a cache
+     */
+    static SolutionCache solutionCache(List<String> options) {
+        String file = stringOption(options, "cache", null);
+        if (file == null) {
+            return null;
+        }
+        int capacity = intOption(options, "cachesize", 1 << 16);
+        return CACHES.computeIfAbsent(Paths.get(file).toAbsolutePath(), path -> {
+            try {
+                return SolutionCache.open(path, capacity);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * @return a board as a SkyscraperConfig, or null if it is of another kind
+     */
+    static SkyscraperConfig asBoard(Configuration config) {
+        if (config instanceof SkyscraperConfig) {
+            return (SkyscraperConfig) config;
+        } else if (config instanceof BitmaskConfig) {
+            return ((BitmaskConfig) config).toSkyscraperConfig();
+        }
+        return null;
+    }
+
+    /**
+     * @return the cells of a board in row-major order
+     */
+    static int[] grid(SkyscraperConfig board) {
+        int size = board.getSize();
+        int[] grid = new int[size * size];
+        for (int at = 0; at < grid.length; at++) {
+            grid[at] = board.getCell(at / size, at % size);
+        }
+        return grid;
+    }
+
+    /**
+     * Read a name=value option as an int.
+     *
+     * @param options the command line options
+     * @param name the option name
+     * @param fallback the value to use when the option is not given
+     * @return the option value
+     */
+    private static int intOption(List<String> options, String name, int fallback) {
+        return Integer.parseInt(stringOption(options, name, Integer.toString(fallback)));
+    }
+
+    /**
+     * Read a name=value option.
+     *
+     * @param options the command line options
+     * @param name the option name
+     * @param fallback the value to use when the option is not given
+     * @return the option value
+     */
+    private static String stringOption(List<String> options, String name, String fallback) {
+        for (String option : options) {
+            if (option.startsWith(name + "=")) {
+                return option.substring(name.length() + 1);
+            }
+        }
+        return fallback;
+    }
 } 
@@ -1,5 +1,5 @@
-import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -8,30 +8,40 @@ import java.util.*;
  * @author RIT CS
  * @author Blake Batson
  */
-public class SkyscraperConfig implements Configuration {
+public class SkyscraperConfig implements Configuration, HashedConfiguration, RenderableConfiguration {
     /** empty cell value */
     public final static int EMPTY = 0;
 
     /** empty cell value display */
     public final static char EMPTY_CELL = '.';
 
+    /** largest board, every value of a cell has to fit a bit of an int mask */
+    public final static int MAX_SIZE = 16;
+
     //Final values to make accessing each border easier
-    private final static int NORTH = 0;
-    private final static int EAST = 1;
-    private final static int SOUTH = 2;
-    private final static int WEST = 3;
+    final static int NORTH = 0;
+    final static int EAST = 1;
+    final static int SOUTH = 2;
+    final static int WEST = 3;
 
     private int size;           //The length of each side of the grid
     private int[][] borders;    //2D array storing the border arrays in the same order as the final declares above
-    private int[][] grid;       //2D array representing the grid we are filling in
+    private byte[] grid;        //The grid we are filling in, row-major, one byte per cell
+    private int empty;          //How many spaces of the grid are still empty
+    private long[] keys;        //Zobrist keys for this grid size, shared by every config
+    private long hash;          //Zobrist hash of the grid, kept up to date by set()
+    private boolean clash;      //Two filled spaces of a row or column hold the same value
+    private ValidationKernel kernel;    //Checks the lines when set, see setKernel()
+    private byte[] lines;       //With a kernel, the rows then the columns of the grid, STRIDE bytes each
+    private byte[][] clues;     //With a kernel, the borders padded to STRIDE bytes, shared by every config
 
     /**
      * Constructor
      *
      * @param filename the filename
      *  <p>
-     *  Read the board file.  It is organized as follows:
-     *  DIM     # square DIMension of board (1-9)
+     *  Read the board file with BoardReader.  It is organized as follows:
+     *  DIM     # square DIMension of board (1-16)
      *  lookNS   # DIM values (1-DIM) left to right
      *  lookEW   # DIM values (1-DIM) top to bottom
      *  lookSN   # DIM values (1-DIM) left to right
@@ -44,41 +54,50 @@ public class SkyscraperConfig implements Configuration {
      */
     SkyscraperConfig(String filename) throws FileNotFoundException
     {
-        Scanner f = new Scanner(new File(filename));
+        this(BoardReader.readBoard(filename));
+    }
 
-        String[] vals;
-        int iLine = 0;
-        while(f.hasNextLine())
+    /**
+     * Build a new board from the numbers of a board file, filling in the
+     * spaces its borders force
+     *
+     * @param size the length of each side of the grid
+     * @param borders the border arrays, in NORTH, EAST, SOUTH, WEST order
+     * @param cells the grid in row-major order, EMPTY for an empty cell
+     * @return the initial configuration
+     */
+    static SkyscraperConfig newBoard(int size, int[][] borders, int[] cells)
+    {
+        SkyscraperConfig board = new SkyscraperConfig(size, borders, cells);
+        board.fillKnown();      //Fill the spaces that are easy to fill depending on if the border is 1 or size
+        board.countEmpty();
+        board.clash = board.findClash();     //Filling in the known spaces can put the same value twice in a line
+        return board;
+    }
+
+    /**
+     * Build a configuration from a board that has already been read.
+     * The borders are shared, the grid is copied.
+     *
+     * @param size the length of each side of the grid
+     * @param borders the border arrays, in NORTH, EAST, SOUTH, WEST order
+     * @param cells the grid in row-major order, EMPTY for an empty cell
+     * @throws IllegalArgumentException if the board is larger than MAX_SIZE
+     */
+    SkyscraperConfig(int size, int[][] borders, int[] cells)
+    {
+        if (size > MAX_SIZE)
+            throw new IllegalArgumentException("boards above " + MAX_SIZE + "x" + MAX_SIZE + " are not supported");
+        this.size = size;
+        this.borders = borders;
+        this.grid = new byte[size * size];
+        this.keys = Zobrist.keys(size);
+        for(int at = 0; at < size * size; at++)
         {
-            String line = f.nextLine();
-            if (iLine == 0)     //Get size from line 1, also initialize the arrays
-            {
-                size = Integer.parseInt(line);
-                borders = new int[4][size];
-                grid = new int[size][size];
-            }
-            else if (5 > iLine && iLine > 0)    //Get border values from lines 2 - 5
-            {
-                vals = line.split(" ");
-                for(int i = 0; i < size; i++)
-                {
-                    borders[iLine-1][i] = Integer.parseInt(vals[i]);
-                }
-            }
-            else if (size + 5 > iLine)      //Get the rest of the lines as the initally filled spaces
-            {
-                vals = line.split(" ");
-                for(int i = 0; i < size; i++)
-                {
-                    grid[iLine-5][i] = Integer.parseInt(vals[i]);
-                }
-            }
-            iLine++;
+            set(at / size, at % size, cells[at]);
         }
-
-        fillKnown();    //Fill the spaces that are easy to fill depending on if the border is 1 or size
-
-        f.close();
+        countEmpty();
+        clash = findClash();
     }
 
     /**
@@ -90,20 +109,120 @@ public class SkyscraperConfig implements Configuration {
     {
         this.size = copy.size;
         this.borders = copy.borders;
-        this.grid = new int[size][size];
-        for(int y = 0; y < size; y++)
+        this.empty = copy.empty;
+        this.grid = copy.grid.clone();
+        this.keys = copy.keys;
+        this.hash = copy.hash;
+        this.clash = copy.clash;
+        if (copy.kernel != null)
         {
-            for(int x = 0; x < size; x++)
+            this.kernel = copy.kernel;
+            this.lines = copy.lines.clone();
+            this.clues = copy.clues;
+        }
+    }
+
+    /**
+     * @return the length of each side of the grid
+     */
+    int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return the border arrays in NORTH, EAST, SOUTH, WEST order (not a copy)
+     */
+    int[][] getBorders()
+    {
+        return borders;
+    }
+
+    /**
+     * @param y the row
+     * @param x the column
+     * @return the value at (y, x), EMPTY if the cell is empty
+     */
+    int getCell(int y, int x)
+    {
+        return get(y, x);
+    }
+
+    /**
+     * @param y the row
+     * @param x the column
+     * @return the value at (y, x), EMPTY if the cell is empty
+     */
+    private int get(int y, int x)
+    {
+        return grid[y * size + x];
+    }
+
+    /**
+     * @param y the row
+     * @param x the column
+     * @param value the value to store at (y, x)
+     */
+    private void set(int y, int x, int value)
+    {
+        int at = y * size + x;
+        if (grid[at] != EMPTY)
+            hash ^= keys[at * size + grid[at] - 1];
+        if (value != EMPTY)
+            hash ^= keys[at * size + value - 1];
+        grid[at] = (byte) value;
+        if (lines != null)
+        {
+            lines[y * ValidationKernel.STRIDE + x] = (byte) value;
+            lines[(size + x) * ValidationKernel.STRIDE + y] = (byte) value;
+        }
+    }
+
+    /**
+     * Check the lines with a validation kernel from now on, here and in
+     * every successor.  The grid is then also kept as padded rows and a
+     * transposed copy, so the lines seen from each border lie side by side.
+     *
+     * @param kernel the kernel, or null to go back to the plain checks
+     * @throws IllegalArgumentException if the board is wider than STRIDE
+     */
+    void setKernel(ValidationKernel kernel)
+    {
+        if (kernel != null && size > ValidationKernel.STRIDE)
+            throw new IllegalArgumentException("kernels take boards up to "
+                    + ValidationKernel.STRIDE + "x" + ValidationKernel.STRIDE);
+        this.kernel = kernel;
+        if (kernel == null)
+        {
+            lines = null;
+            clues = null;
+            return;
+        }
+        clues = new byte[4][ValidationKernel.STRIDE];
+        for (int side = 0; side < 4; side++)
+        {
+            for (int i = 0; i < size; i++)
             {
-                this.grid[y][x] = copy.grid[y][x];
+                clues[side][i] = (byte) borders[side][i];
             }
         }
+        lines = new byte[2 * size * ValidationKernel.STRIDE];
+        for (int at = 0; at < size * size; at++)
+        {
+            set(at / size, at % size, grid[at]);
+        }
+    }
+
+    @Override
+    public long getHash()
+    {
+        return hash;
     }
 
     @Override
     public boolean isGoal() {
         //If its valid and theres no free space its the goal
-        return isValid() && findFreeSpace()[0] == -1;
+        return empty == 0 && isValid();
     }
 
     /**
@@ -114,40 +233,43 @@ public class SkyscraperConfig implements Configuration {
     @Override
     public Collection<Configuration> getSuccessors()
     {
-        int[] free = findFreeSpace();   //Find the available free space
-        boolean used = false;
         ArrayList<Configuration> children = new ArrayList<>();
+        successorSpliterator().forEachRemaining(children::add);
+        return children;
+    }
 
-        for (int i = 1; i <= size; i++)
+    /**
+     * The successors in getSuccessors() order, each one cloned only when
+     * the search asks for it
+     *
+     * @return a spliterator over one child per value the free space can take
+     */
+    @Override
+    public Spliterator<Configuration> successorSpliterator()
+    {
+        int at = findFreeSpace();       //Find the available free space
+        if (at < 0)
+            return new SuccessorSpliterator(0, null);
+        int y = at / size;
+        int x = at % size;
+
+        //Values already used in the row or column of the free space can not go in it
+        int allowed = (1 << size) - 1;
+        for (int i = 0; i < size; i++)
         {
-            //Clone this config
-            SkyscraperConfig child = new SkyscraperConfig(this);
-
-            //Ensure the number has not been used in this column
-            for(int y = 0; y < size; y++)
-            {
-                if (child.grid[y][free[1]] == i) {
-                    used = true;
-                    break;
-                }
-            }
-            //Ensure the number has not been used in this row
-            for(int x = 0; x < size; x++)
-            {
-                if (child.grid[free[0]][x] == i) {
-                    used = true;
-                    break;
-                }
-            }
-            //If the number was used in either dont add it
-            if(!used)
-            {
-                child.grid[free[0]][free[1]] = i;
-                children.add(child);
-            }
-            used = false;
+            if (get(y, i) != EMPTY)
+                allowed &= ~(1 << (get(y, i) - 1));
+            if (get(i, x) != EMPTY)
+                allowed &= ~(1 << (get(i, x) - 1));
         }
-        return children;
+
+        return new SuccessorSpliterator(allowed, value -> {
+            //Clone this config and fill in the free space
+            SkyscraperConfig child = new SkyscraperConfig(this);
+            child.set(y, x, value);
+            child.empty--;
+            return child;
+        });
     }
 
     /**
@@ -158,6 +280,12 @@ public class SkyscraperConfig implements Configuration {
     @Override
     public boolean isValid()
     {
+        //No filling of the empty spaces can fix a value that is already repeated
+        if (clash)
+            return false;
+        if (kernel != null)
+            return kernel.isValid(size, lines, clues);
+
         int count = 0;      //How many buildings are visible from the border position
         int empty = 0;      //How many empty spaces are visible before the tallest tower is seen
         int epast = 0;      //How many empty spaces are visible after the tallest tower is seen
@@ -172,7 +300,7 @@ public class SkyscraperConfig implements Configuration {
             self = borders[NORTH][x];
             for (int y = 0; y < size; y++)
             {
-                current = grid[y][x];   //Get current space
+                current = get(y, x);    //Get current space
 
                 //If current is empty add to one of the empty counters,
                 //else add to count if it's visible and update tallest
@@ -210,7 +338,7 @@ public class SkyscraperConfig implements Configuration {
             self = borders[EAST][y];
             for(int x = size-1; x >= 0; x--)
             {
-                current = grid[y][x];   //Get current space
+                current = get(y, x);    //Get current space
 
                 //If current is empty add to one of the empty counters,
                 //else add to count if it's visible and update tallest
@@ -248,7 +376,7 @@ public class SkyscraperConfig implements Configuration {
             self = borders[SOUTH][x];
             for (int y = size-1; y >= 0; y--)
             {
-                current = grid[y][x];   //Get current space
+                current = get(y, x);    //Get current space
 
                 //If current is empty add to one of the empty counters,
                 //else add to count if it's visible and update tallest
@@ -286,7 +414,7 @@ public class SkyscraperConfig implements Configuration {
             self = borders[WEST][y];
             for(int x = 0; x < size; x++)
             {
-                current = grid[y][x];   //Get current space
+                current = get(y, x);    //Get current space
 
                 //If current is empty add to one of the empty counters,
                 //else add to count if it's visible and update tallest
@@ -322,7 +450,7 @@ public class SkyscraperConfig implements Configuration {
 
     /**
      * Validate the count seen from the border against its proper count
-     * @param self      How many should be seen
+     * @param self      How many should be seen, 0 if the border has no clue
      * @param count     How many are seen
      * @param empty     How many total empty (empty + epast)
      * @param possible  How many possible (count + empty)
@@ -330,8 +458,13 @@ public class SkyscraperConfig implements Configuration {
      */
     private boolean invalid(int self, int count, int empty, int possible)
     {
+        //a border without a clue allows anything
         //if the counted row / collum is complete, make sure the visible count is exactly the border count
         //else make sure the border count is less than the total of the visible + the empty that could be seen
+        if(self == 0)
+        {
+            return false;
+        }
         if(empty == 0)
         {
             return self != count;
@@ -341,20 +474,69 @@ public class SkyscraperConfig implements Configuration {
 
     /**
      * Finds the first free space from the top left to the bottom right
-     * @return      an array where 0 is the y value and 1 is the x value,
-     *              or and array of -1 at 0 if there is no free space
+     * @return      the index of the space (y * size + x),
+     *              or -1 if there is no free space
      */
-    private int[] findFreeSpace()
+    private int findFreeSpace()
     {
+        if (empty == 0)
+            return -1;
         for (int y = 0; y < size; y++)
         {
             for (int x = 0; x < size; x++)
             {
-                if(grid[y][x] == 0)
-                    return new int[]{y,x};
+                if(get(y, x) == 0)
+                    return y * size + x;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Look for a value that is in a row or column twice.  Successors only
+     * put values that are not in the row or column yet, so only the spaces
+     * filled before the search can clash
+     * @return      true if some row or column repeats a value
+     */
+    private boolean findClash()
+    {
+        for (int i = 0; i < size; i++)
+        {
+            int row = 0;    //Values seen in row i
+            int col = 0;    //Values seen in column i
+            for (int j = 0; j < size; j++)
+            {
+                if (get(i, j) != EMPTY)
+                {
+                    if ((row & 1 << get(i, j)) != 0)
+                        return true;
+                    row |= 1 << get(i, j);
+                }
+                if (get(j, i) != EMPTY)
+                {
+                    if ((col & 1 << get(j, i)) != 0)
+                        return true;
+                    col |= 1 << get(j, i);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Count the empty spaces of the grid, call once the grid is filled in
+     */
+    private void countEmpty()
+    {
+        empty = 0;
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                if(get(y, x) == EMPTY)
+                    empty++;
             }
         }
-        return new int[]{-1};
     }
 
 
@@ -374,42 +556,42 @@ public class SkyscraperConfig implements Configuration {
         {
 
             if(borders[NORTH][i] == 1)
-                grid[0][i] = size;
+                set(0, i, size);
             else if(borders[NORTH][i] == size)
             {
                 for (int y = 0; y < size; y++)
                 {
-                    grid[y][i] = y+1;
+                    set(y, i, y+1);
                 }
             }
 
             if(borders[SOUTH][i] == 1)
-                grid[size-1][i] = size;
+                set(size-1, i, size);
             else if(borders[SOUTH][i] == size)
             {
                 for (int y = size-1; y >= 0; y--)
                 {
-                    grid[y][i] = size - y;
+                    set(y, i, size - y);
                 }
             }
 
             if(borders[WEST][i] == 1)
-                grid[i][0] = size;
+                set(i, 0, size);
             else if(borders[WEST][i] == size)
             {
                 for (int x = 0; x < size; x++)
                 {
-                    grid[i][x] = x+1;
+                    set(i, x, x+1);
                 }
             }
 
             if(borders[EAST][i] == 1)
-                grid[i][size-1] = size;
+                set(i, size-1, size);
             else if(borders[EAST][i] == size)
             {
                 for (int x = size-1; x >= 0; x--)
                 {
-                    grid[i][x] = size - x;
+                    set(i, x, size - x);
                 }
             }
         }
@@ -432,63 +614,18 @@ public class SkyscraperConfig implements Configuration {
      */
     @Override
     public String toString() {
-        StringBuilder out = new StringBuilder("  "); //We are building a new string
-        int place = 0;  // used to keep track of the actual index for writing north and south borders
-
-        //North bar
-        for( int i = 0; i < size * 2 - 1; i++)
-        {
-            //Write the value if the loop is even, add a space otherwise
-            if(i % 2 == 0)
-            {
-                out.append(borders[NORTH][place]);
-                place++;
-            }
-            else
-                out.append(" ");
-        }
-        out.append("%n  ");
-
-        //North seperator
-        out.append("-".repeat(Math.max(0, size * 2)));
-        out.append("%n");
-
-        //West border, grid, right border
-        for (int i = 0; i < size; i++)
-        {
-            //Write the west and the seperator
-            out.append(borders[WEST][i]).append("|");
-            //Fill in all the values of the grid at that y followed by a space
-            for (int j = 0; j < size; j++)
-            {
-                if(grid[i][j] == EMPTY)
-                    out.append(EMPTY_CELL + " ");
-                else
-                    out.append(grid[i][j]).append(" ");
-            }
-            out = new StringBuilder(out.substring(0, out.length() - 1));    //take off the last space
-            out.append("|").append(borders[EAST][i]).append("%n");  //write the right seperator and value
-        }
-
-        //South seperator
-        out.append("  ");
-        out.append("-".repeat(Math.max(0, size * 2)));
-        out.append("%n  ");
+        return BoardFormat.toString(size, borders, at -> grid[at]);
+    }
 
-        place = 0;
-        //South bar
-        for( int i = 0; i < size * 2 - 1; i++)
-        {
-            //Write the value if the loop is even, add a space otherwise
-            if(i % 2 == 0)
-            {
-                out.append(borders[SOUTH][place]);
-                place++;
-            }
-            else
-                out.append(" ");
-        }
+    @Override
+    public void render(Appendable out) throws IOException
+    {
+        BoardFormat.render(out, size, borders, at -> grid[at]);
+    }
 
-        return String.format(out.toString());  // remove
+    @Override
+    public void renderCompact(Appendable out) throws IOException
+    {
+        BoardFormat.renderCompact(out, size, at -> grid[at]);
     }
 }
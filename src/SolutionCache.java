@@ -0,0 +1,297 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the answers of solved boards in a file, keyed by the key of
+ * their CanonicalBoard, so a board that was solved before, in any
+ * orientation, is answered without searching.  The file is memory-mapped:
+ * a lookup reads a few hundred bytes of it and nothing is loaded up front.
+ *
+ * The file holds a fixed number of entries, split into buckets of four.
+ * A board can only live in its own bucket, and when the bucket is full the
+ * entry that was used longest ago is evicted, so the file never grows.
+ * Every entry has room for a board of up to MAX_SIZE:
+ *
+ *  header:  magic, version, entries, entry bytes (ints), clock (long)
+ *  entry:   hash (long, 0 when free), last used (long), answer (byte),
+ *           key (KEY_BYTES), solution (one byte per cell)
+ *
+ * One process may use a file at a time, which holds a lock on it for as
+ * long as it runs; its threads may share the cache.
+ *
+ * @author Blake Batson
+ */
+public class SolutionCache {
+    /** The largest board that fits in an entry */
+    public static final int MAX_SIZE = 16;
+
+    private static final int MAGIC = 0x534b5953;   //"SKYS"
+    private static final int VERSION = 1;
+    private static final int WAYS = 4;
+    private static final int HEADER = 64;
+    private static final int CLOCK_AT = 16;
+
+    private static final int KEY_BYTES = 1 + 4 * MAX_SIZE + MAX_SIZE * MAX_SIZE;
+    private static final int HASH_AT = 0;
+    private static final int USED_AT = 8;
+    private static final int ANSWER_AT = 16;
+    private static final int KEY_AT = 17;
+    private static final int SOLUTION_AT = KEY_AT + KEY_BYTES;
+    private static final int ENTRY = (SOLUTION_AT + MAX_SIZE * MAX_SIZE + 7) & ~7;
+
+    /** What an entry says about its board */
+    private static final byte SOLVED = 1;
+    private static final byte NO_SOLUTION = 2;
+
+    /** What get() returns for a board that is known to have no solution */
+    public static final int[] NONE = new int[0];
+
+    private final FileChannel channel;    //Kept open, closing it would drop the lock
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final int bucketMask;
+    private long clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private SolutionCache(FileChannel channel, FileLock lock, MappedByteBuffer buffer, int entries) {
+        this.channel = channel;
+        this.lock = lock;
+        this.buffer = buffer;
+        this.bucketMask = entries / WAYS - 1;
+        this.clock = buffer.getLong(CLOCK_AT);
+    }
+
+    /**
+     * Open a cache file, creating it if it is not there.
+     *
+     * @param file the cache file
+     * @param capacity how many boards a new file holds, rounded up to a
+     *  power of two; an existing file keeps its own capacity
+     * @return the cache
+     * @throws IOException if the file can not be mapped, is not a cache, or
+     *  is in use by another process
+     */
+    public static SolutionCache open(Path file, int capacity) throws IOException {
+        if (capacity < 1 || capacity > 1 << 20) {
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                throw new IOException(file + " is in use by another process");
+            }
+
+            int entries;
+            if (channel.size() == 0) {
+                entries = Math.max(WAYS, Integer.highestOneBit(capacity - 1) * 2);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                channel.read(header, 0);
+                header.flip();
+                if (header.remaining() < HEADER || header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                        || header.getInt(12) != ENTRY) {
+                    throw new IOException(file + " is not a solution cache");
+                }
+                entries = header.getInt(8);
+                if (Integer.bitCount(entries) != 1 || entries < WAYS
+                        || channel.size() != HEADER + (long) entries * ENTRY) {
+                    throw new IOException(file + " is not a solution cache");
+                }
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER + (long) entries * ENTRY);
+            if (buffer.getInt(0) != MAGIC) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, entries);
+                buffer.putInt(12, ENTRY);
+            }
+            return new SolutionCache(channel, lock, buffer, entries);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Look a board up.
+     *
+     * @param board the canonical form of the board
+     * @return the solution of the canonical board in row-major order, NONE
+     *  if the board is known to have no solution, or null if it is not in
+     *  the cache
+     */
+    public synchronized int[] get(CanonicalBoard board) {
+        byte[] key = board.key();
+        long hash = hash(key);
+        int entry = find(hash, key);
+        if (entry < 0) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        touch(entry);
+        if (buffer.get(entry + ANSWER_AT) == NO_SOLUTION) {
+            return NONE;
+        }
+        int[] solution = new int[board.getSize() * board.getSize()];
+        for (int at = 0; at < solution.length; at++) {
+            solution[at] = buffer.get(entry + SOLUTION_AT + at);
+        }
+        return solution;
+    }
+
+    /**
+     * Remember the answer for a board.
+     *
+     * @param board the canonical form of the board
+     * @param solution the solution of the canonical board in row-major
+     *  order, or null if the board has no solution
+     */
+    public synchronized void put(CanonicalBoard board, int[] solution) {
+        byte[] key = board.key();
+        if (board.getSize() > MAX_SIZE) {
+            return;
+        }
+        long hash = hash(key);
+        int entry = find(hash, key);
+        if (entry < 0) {
+            // a free entry of the bucket, or else the one used longest ago
+            int base = HEADER + bucket(hash) * WAYS * ENTRY;
+            entry = base;
+            for (int way = 0; way < WAYS; way++) {
+                int at = base + way * ENTRY;
+                if (buffer.getLong(at + HASH_AT) == 0) {
+                    entry = at;
+                    break;
+                }
+                if (buffer.getLong(at + USED_AT) < buffer.getLong(entry + USED_AT)) {
+                    entry = at;
+                }
+            }
+            if (buffer.getLong(entry + HASH_AT) != 0) {
+                evictions.increment();
+            }
+        }
+
+        buffer.putLong(entry + HASH_AT, 0);     //Half written entries are free
+        for (int i = 0; i < key.length; i++) {
+            buffer.put(entry + KEY_AT + i, key[i]);
+        }
+        buffer.put(entry + ANSWER_AT, solution == null ? NO_SOLUTION : SOLVED);
+        if (solution != null) {
+            for (int at = 0; at < solution.length; at++) {
+                buffer.put(entry + SOLUTION_AT + at, (byte) solution[at]);
+            }
+        }
+        touch(entry);
+        buffer.putLong(entry + HASH_AT, hash);
+        stores.increment();
+    }
+
+    /**
+     * @return the entry holding a key, or -1
+     */
+    private int find(long hash, byte[] key) {
+        if (key[0] > MAX_SIZE) {
+            return -1;
+        }
+        int base = HEADER + bucket(hash) * WAYS * ENTRY;
+        for (int way = 0; way < WAYS; way++) {
+            int entry = base + way * ENTRY;
+            if (buffer.getLong(entry + HASH_AT) == hash && sameKey(entry, key)) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private boolean sameKey(int entry, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(entry + KEY_AT + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void touch(int entry) {
+        buffer.putLong(entry + USED_AT, ++clock);
+        buffer.putLong(CLOCK_AT, clock);
+    }
+
+    private int bucket(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & bucketMask;
+    }
+
+    /**
+     * 64 bit FNV-1a of a key, never 0 since that marks a free entry.
+     */
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * @return how many boards the cache can hold
+     */
+    public int getCapacity() {
+        return (bucketMask + 1) * WAYS;
+    }
+
+    /**
+     * @return lookups that found the board
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return lookups that did not
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return answers stored
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * @return answers pushed out to make room for newer ones
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("capacity %d, hits %d, misses %d, stored %d, evicted %d",
+                getCapacity(), getHits(), getMisses(), getStores(), getEvictions());
+    }
+}
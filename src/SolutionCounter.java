@@ -0,0 +1,258 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Enumerates every solution of a board instead of stopping at the first
+ * one.  Used to check that a board has exactly one solution (count with a
+ * limit of 2) or to find out how many it has.
+ *
+ * Enumerating means searching the whole tree, so the work is split across
+ * cores the same way as in ParallelBacktracker: configurations above the
+ * cutoff depth fork one task per valid successor, and each task searches
+ * its subtree sequentially, in place when the configuration supports it.
+ * Solutions are streamed to a consumer as they are found and never stored.
+ *
+ * @author Blake Batson
+ */
+public class SolutionCounter {
+    /** How many workers search at once */
+    private final int parallelism;
+
+    /** Configurations shallower than this are split into tasks */
+    private final int cutoff;
+
+    /** Boards known to have no solution, null when they are not remembered */
+    private TranspositionTable table;
+
+    /**
+     * Initialize a new solution counter.
+     *
+     * @param parallelism How many worker threads to use
+     * @param cutoff Depth below which subtrees are searched sequentially
+     */
+    public SolutionCounter(int parallelism, int cutoff) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.cutoff = cutoff;
+    }
+
+    /**
+     * Remember the boards that turn out to have no solution below them and
+     * skip them when they come up again.  Only used for configurations that
+     * implement HashedConfiguration.
+     *
+     * @param table the dead ends of the board being counted, or null
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Count the solutions of a configuration.
+     *
+     * @param config A valid configuration
+     * @param limit Stop once this many solutions are found
+     * @param solutions Receives each solution as it is found, may be null.
+     *  Calls are made one at a time, but an in place search keeps changing
+     *  the board it hands over once the call returns, so copy anything that
+     *  has to be kept (its toString(), for example).
+     * @return The number of solutions, at most limit
+     */
+    public long count(Configuration config, long limit, Consumer<Configuration> solutions) {
+        Search search = new Search(limit, solutions);
+        if (parallelism == 1) {
+            // one worker has nothing to split, so search straight away without a pool
+            new CountTask(config, cutoff, search).compute();
+            return Math.min(search.found.get(), limit);
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new CountTask(config, 0, search));
+        } finally {
+            pool.shutdownNow();
+        }
+        return Math.min(search.found.get(), limit);
+    }
+
+    /**
+     * Count every solution of a configuration.
+     *
+     * @param config A valid configuration
+     * @return The number of solutions
+     */
+    public long countAll(Configuration config) {
+        return count(config, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Does a configuration have exactly one solution?  The search stops as
+     * soon as a second solution turns up.
+     *
+     * @param config A valid configuration
+     * @return true if there is one solution, false for none or several
+     */
+    public boolean isUnique(Configuration config) {
+        return count(config, 2, null) == 1;
+    }
+
+    /**
+     * What every task of one count shares.
+     */
+    private static class Search {
+        final long limit;
+        final Consumer<Configuration> solutions;
+        final AtomicLong found = new AtomicLong();
+
+        Search(long limit, Consumer<Configuration> solutions) {
+            this.limit = limit;
+            this.solutions = solutions;
+        }
+
+        /**
+         * @return true once the limit has been reached
+         */
+        boolean done() {
+            return found.get() >= limit;
+        }
+
+        /**
+         * Record a goal and hand it to the consumer if it is within the limit.
+         */
+        void goal(Configuration solution) {
+            if (found.incrementAndGet() <= limit && solutions != null) {
+                synchronized (this) {
+                    solutions.accept(solution);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the solutions below one configuration.
+     */
+    private class CountTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Configuration config;
+        private final int depth;
+        private final Search search;
+
+        CountTask(Configuration config, int depth, Search search) {
+            this.config = config;
+            this.depth = depth;
+            this.search = search;
+        }
+
+        @Override
+        protected void compute() {
+            if (search.done()) {
+                return;
+            }
+            if (depth >= cutoff) {
+                if (config instanceof MutableConfiguration) {
+                    countInPlace((MutableConfiguration) config);
+                } else {
+                    count(config);
+                }
+            } else if (config.isGoal()) {
+                search.goal(config);
+            } else {
+                List<CountTask> tasks = new ArrayList<>();
+                for (Configuration child : config.getSuccessors()) {
+                    if (child.isValid()) {
+                        tasks.add(new CountTask(child, depth + 1, search));
+                    }
+                }
+                invokeAll(tasks);
+            }
+        }
+
+        /**
+         * Sequential copying enumeration of a subtree.
+         *
+         * @param current The configuration to search below
+         * @return How many solutions were found below current
+         */
+        private long count(Configuration current) {
+            if (search.done() || isKnownDeadEnd(current)) {
+                return 0;
+            }
+            if (current.isGoal()) {
+                search.goal(current);
+                return 1;
+            }
+            long solutions = 0;
+            boolean searched = false;
+            for (Iterator<Configuration> children = current.successors(); children.hasNext(); ) {
+                Configuration child = children.next();
+                if (child.isValid()) {
+                    solutions += count(child);
+                    searched = true;
+                }
+            }
+            deadEnd(current, searched, solutions);
+            return solutions;
+        }
+
+        /**
+         * Sequential in place enumeration of a subtree.  The board is back
+         * to how it started when this returns.
+         *
+         * @param board The board to search below
+         * @return How many solutions were found below board
+         */
+        private long countInPlace(MutableConfiguration board) {
+            if (search.done() || isKnownDeadEnd(board)) {
+                return 0;
+            }
+            if (board.isGoal()) {
+                search.goal(config);
+                return 1;
+            }
+            long solutions = 0;
+            boolean searched = false;
+            int cell = board.nextCell();
+            for (int left = board.candidates(cell); left != 0 && !search.done(); left &= left - 1) {
+                board.makeMove(cell, Integer.numberOfTrailingZeros(left) + 1);
+                if (board.isValid()) {
+                    solutions += countInPlace(board);
+                    searched = true;
+                }
+                board.undoMove();
+            }
+            deadEnd(board, searched, solutions);
+            return solutions;
+        }
+
+        /**
+         * @param board the board about to be searched
+         * @return true if the transposition table has it as a dead end
+         */
+        private boolean isKnownDeadEnd(Object board) {
+            return table != null && board instanceof HashedConfiguration
+                    && table.isDeadEnd(((HashedConfiguration) board).getHash());
+        }
+
+        /**
+         * Remember a board with no solution below it, unless none of its
+         * successors was even valid.  A search cut short by the limit proves
+         * nothing, so nothing is stored once it is reached.
+         *
+         * @param board the board that was searched
+         * @param searched was any successor valid and searched?
+         * @param solutions how many solutions were found below it
+         */
+        private void deadEnd(Object board, boolean searched, long solutions) {
+            if (searched && solutions == 0 && table != null && board instanceof HashedConfiguration && !search.done()) {
+                table.storeDeadEnd(((HashedConfiguration) board).getHash());
+            }
+        }
+    }
+}
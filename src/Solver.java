@@ -0,0 +1,19 @@
+import java.util.Optional;
+
+/**
+ * Something that can solve a board.  Backtracker and ParallelBacktracker
+ * search any Configuration; other solvers encode the board their own way
+ * and only take the boards they know how to encode.
+ *
+ * @author Blake Batson
+ */
+public interface Solver {
+    /**
+     * Try find a solution, if one exists, for a given configuration.
+     *
+     * @param config A valid configuration
+     * @return A solution config, or empty if no solution
+     * @throws IllegalArgumentException if the solver can not take this board
+     */
+    public Optional<Configuration> solve(Configuration config);
+}
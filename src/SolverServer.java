@@ -0,0 +1,446 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps one warm JVM solving boards for other programs, so each board
+ * costs a solve instead of a JVM start, class loading and JIT warmup.
+ * The SolverServer class is run as:
+ *  $java SolverServer [engine] [options...]
+ *       [engine]: which configuration to search with, as for Skyscraper
+ *       [options]: any Skyscraper option, plus
+ *                 port=N      - listen on this TCP port of the loopback address (default: 7171)
+ *                 unix=PATH   - listen on a Unix domain socket instead (Java 16+)
+ *                 workers=N   - threads solving boards (default: all cores)
+ *                 queue=N     - requests taken in but not answered yet, across every
+ *                               connection, before the server stops reading (default: 4 per
+ *                               worker)
+ *                 timeout=MS  - deadline of a request that does not give its own (default: none)
+ *
+ * The protocol is lines of text.  A request is a SOLVE line followed by
+ * the board in the board file format, without a description:
+ *
+ *  SOLVE id [timeout=MS]
+ *  4
+ *  2 1 3 2
+ *  ...
+ *
+ * and is answered with one tab separated line, the same as the compact
+ * output of BatchSolver with the id in place of the file: the id, the
+ * status (SOLVED, NO_SOLUTION, TIMED_OUT, CANCELLED or ERROR), the solve
+ * time in nanoseconds and the solution in the compact form, - if there
+ * is none, or the message of an ERROR.  PING is answered with PONG and
+ * QUIT closes the connection once its answers are written.
+ *
+ * Requests may be pipelined: a client can send many before reading any
+ * answers.  Answers come back as the boards finish, not in request order,
+ * so ids should be unique per connection.  The deadline of a request
+ * counts from when the server reads it, so time spent waiting behind
+ * other requests counts too.  Once queue requests are waiting the server
+ * reads no more until one is answered, and the socket's buffers push back
+ * on the clients.
+ *
+ * Anything the options keep between solves, a solution cache for example,
+ * is shared by every request.
+ *
+ * @author Blake Batson
+ */
+public class SolverServer {
+    /** Requests taken in per worker before reading waits */
+    private static final int QUEUED_PER_WORKER = 4;
+
+    private final String engine;
+    private final List<String> options;
+    private final long timeoutMillis;
+    private final ExecutorService io;
+    private final ExecutorService cpu;
+    private final ScheduledExecutorService timer;
+    private final Semaphore inFlight;
+    private final LongAdder served = new LongAdder();
+
+    /**
+     * Initialize a new server.
+     *
+     * @param engine which configuration to search with, as for Skyscraper
+     * @param options the Skyscraper search options
+     * @param workers how many boards are solved at once
+     * @param queue how many requests may wait for an answer at once
+     * @param timeoutMillis the deadline of a request that does not give one, 0 for none
+     */
+    public SolverServer(String engine, List<String> options, int workers, int queue, long timeoutMillis) {
+        if (workers < 1 || queue < 1) {
+            throw new IllegalArgumentException("workers and queue must be at least 1: " + workers + ", " + queue);
+        }
+        this.engine = engine;
+        this.options = options;
+        this.timeoutMillis = timeoutMillis;
+        this.io = BatchSolver.ioExecutor();
+        this.cpu = Executors.newFixedThreadPool(workers);
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "server-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.inFlight = new Semaphore(queue);
+    }
+
+    /**
+     * @return how many requests have been answered
+     */
+    public long getServed() {
+        return served.sum();
+    }
+
+    /**
+     * Accept connections until the thread is interrupted or the socket is
+     * closed, serving each one on its own thread.
+     *
+     * @param server a bound server socket
+     * @throws IOException if accepting fails
+     */
+    public void serve(ServerSocketChannel server) throws IOException {
+        while (!Thread.currentThread().isInterrupted()) {
+            SocketChannel client = server.accept();
+            try {
+                io.execute(() -> connection(client));
+            } catch (RejectedExecutionException e) {
+                client.close();
+            }
+        }
+    }
+
+    /**
+     * Release the worker threads.
+     */
+    public void shutdown() {
+        cpu.shutdownNow();
+        io.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    /**
+     * Read the requests of one connection until it ends, then wait for
+     * their answers and close it.
+     */
+    private void connection(SocketChannel client) {
+        // one party for the reader, one more for every request not answered yet
+        Phaser pending = new Phaser(1);
+        try (SocketChannel channel = client;
+                BufferedReader in = new BufferedReader(new InputStreamReader(input(channel),
+                        StandardCharsets.US_ASCII));
+                Writer out = new BufferedWriter(new OutputStreamWriter(output(channel),
+                        StandardCharsets.US_ASCII))) {
+            try {
+                for (String line = in.readLine(); line != null; line = in.readLine()) {
+                    String[] words = line.trim().split("\\s+");
+                    if (words[0].equals("SOLVE") && words.length >= 2) {
+                        if (!request(words, in, out, pending)) {
+                            break;
+                        }
+                    } else if (words[0].equals("PING")) {
+                        answer(out, "PONG");
+                    } else if (words[0].equals("QUIT")) {
+                        break;
+                    } else if (!words[0].isEmpty()) {
+                        answer(out, "-\t" + BatchSolver.Status.ERROR + "\t0\tunknown request: " + words[0]);
+                    }
+                }
+            } finally {
+                pending.arriveAndAwaitAdvance();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // the client went away, nothing left to answer
+        }
+    }
+
+    /**
+     * A stream that reads straight from a blocking channel.  The streams of
+     * Channels.newInputStream() and newOutputStream() both hold the
+     * channel's blocking lock, so a reader waiting for the next request
+     * would keep the workers from writing their answers.
+     */
+    private static InputStream input(SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                return length == 0 ? 0 : channel.read(ByteBuffer.wrap(bytes, offset, length));
+            }
+        };
+    }
+
+    /**
+     * A stream that writes straight to a blocking channel, see input().
+     */
+    private static OutputStream output(SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        };
+    }
+
+    /**
+     * Read one board and queue it, waiting first if too many requests are
+     * waiting for an answer.
+     *
+     * @param words the words of the SOLVE line
+     * @return false if the board could not be read, so the connection can
+     *  not be followed any more
+     */
+    private boolean request(String[] words, BufferedReader in, Writer out, Phaser pending)
+            throws IOException, InterruptedException {
+        String id = words[1];
+        long received = System.nanoTime();
+
+        // the size line says how many more lines the board takes
+        String sizeLine = in.readLine();
+        int size;
+        try {
+            size = Integer.parseInt(sizeLine == null ? "" : sizeLine.trim());
+        } catch (NumberFormatException e) {
+            answer(out, id + "\t" + BatchSolver.Status.ERROR + "\t0\texpected the board size, not: " + sizeLine);
+            return false;
+        }
+        if (size < 1 || size > SkyscraperConfig.MAX_SIZE) {
+            // reading that many lines would eat the requests after this one
+            answer(out, id + "\t" + BatchSolver.Status.ERROR + "\t0\tsize out of range 1-"
+                    + SkyscraperConfig.MAX_SIZE + ": " + size);
+            return false;
+        }
+        StringBuilder text = new StringBuilder(sizeLine).append('\n');
+        for (int i = 0; i < 4 + size; i++) {
+            String line = in.readLine();
+            if (line == null) {
+                return false;
+            }
+            text.append(line).append('\n');
+        }
+
+        Configuration config;
+        long deadline;
+        try {
+            long timeout = timeoutMillis;
+            for (int i = 2; i < words.length; i++) {
+                if (words[i].startsWith("timeout=")) {
+                    timeout = Long.parseLong(words[i].substring("timeout=".length()));
+                }
+            }
+            deadline = timeout > 0 ? received + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+            SkyscraperConfig initial = new BoardReader(id, text.toString().getBytes(StandardCharsets.US_ASCII)).next();
+            config = Skyscraper.forEngine(initial, engine, options);
+        } catch (IllegalArgumentException e) {
+            answer(out, id + "\t" + BatchSolver.Status.ERROR + "\t0\t" + e.getMessage());
+            return true;
+        }
+
+        inFlight.acquire();
+        pending.register();
+        try {
+            cpu.execute(() -> solve(id, config, deadline, out, pending));
+        } catch (RejectedExecutionException e) {
+            finish(out, id + "\t" + BatchSolver.Status.CANCELLED + "\t0\t-", pending);
+        }
+        return true;
+    }
+
+    /**
+     * Solve one board on a worker.  If the deadline passes first the worker
+     * is interrupted and the search stops.
+     */
+    private void solve(String id, Configuration config, long deadline, Writer out, Phaser pending) {
+        long start = System.nanoTime();
+        if (deadline != 0 && start - deadline >= 0) {
+            finish(out, id + "\t" + BatchSolver.Status.TIMED_OUT + "\t0\t-", pending);
+            return;
+        }
+        Thread worker = Thread.currentThread();
+        Object lock = new Object();
+        boolean[] running = {true};
+        boolean[] expired = {false};
+        ScheduledFuture<?> alarm = null;
+        if (deadline != 0) {
+            alarm = timer.schedule(() -> {
+                synchronized (lock) {
+                    if (running[0]) {
+                        expired[0] = true;
+                        worker.interrupt();
+                    }
+                }
+            }, deadline - start, TimeUnit.NANOSECONDS);
+        }
+
+        StringBuilder line = new StringBuilder(id).append('\t');
+        try {
+            Optional<Configuration> solution = Skyscraper.solve(config, options, false);
+            long nanos = System.nanoTime() - start;
+            if (solution.isPresent()) {
+                line.append(BatchSolver.Status.SOLVED).append('\t').append(nanos).append('\t');
+                Skyscraper.print(line, solution.get(), true);
+            } else {
+                line.append(BatchSolver.Status.NO_SOLUTION).append('\t').append(nanos).append("\t-");
+            }
+        } catch (CancellationException e) {
+            line.append(expired[0] ? BatchSolver.Status.TIMED_OUT : BatchSolver.Status.CANCELLED)
+                    .append('\t').append(System.nanoTime() - start).append("\t-");
+        } catch (RuntimeException | StackOverflowError | IOException e) {
+            line.append(BatchSolver.Status.ERROR).append('\t').append(System.nanoTime() - start)
+                    .append('\t').append(e);
+        }
+
+        // make sure a late alarm can not interrupt the worker's next board
+        synchronized (lock) {
+            running[0] = false;
+        }
+        if (alarm != null) {
+            alarm.cancel(false);
+        }
+        Thread.interrupted();
+        finish(out, line.toString(), pending);
+    }
+
+    /**
+     * Answer a request that was queued and let the next one in.
+     */
+    private void finish(Writer out, String line, Phaser pending) {
+        try {
+            answer(out, line);
+        } catch (IOException e) {
+            // the client went away, the connection's reader finds out too
+        }
+        served.increment();
+        inFlight.release();
+        pending.arriveAndDeregister();
+    }
+
+    /**
+     * Write one answer line, straight away so pipelined clients are not
+     * kept waiting behind the buffer.
+     */
+    private static void answer(Writer out, String line) throws IOException {
+        synchronized (out) {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    /**
+     * Open the server socket the options ask for.
+     *
+     * @param options the server options
+     * @return a bound server socket
+     * @throws IOException if the socket can not be bound
+     */
+    static ServerSocketChannel bind(List<String> options) throws IOException {
+        String unix = null;
+        int port = 7171;
+        for (String option : options) {
+            if (option.startsWith("unix=")) {
+                unix = option.substring("unix=".length());
+            } else if (option.startsWith("port=")) {
+                port = Integer.parseInt(option.substring("port=".length()));
+            }
+        }
+        if (unix == null) {
+            ServerSocketChannel server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            return server;
+        }
+
+        // Unix domain sockets came with Java 16, found by name so older JVMs still run the server
+        SocketAddress address;
+        ProtocolFamily unixFamily;
+        try {
+            Method of = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+            address = (SocketAddress) of.invoke(null, unix);
+            unixFamily = StandardProtocolFamily.valueOf("UNIX");
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            throw new IOException("Unix domain sockets need Java 16 or later", e);
+        }
+        Files.deleteIfExists(Paths.get(unix));
+        ServerSocketChannel server = ServerSocketChannel.open(unixFamily);
+        server.bind(address);
+        return server;
+    }
+
+    /**
+     * The main program.
+     * @param args command line arguments
+     * @throws IOException if the socket can not be bound
+     */
+    public static void main(String[] args) throws IOException {
+        String engine = args.length > 0 ? args[0] : "classic";
+        List<String> options = Arrays.asList(args).subList(Math.min(1, args.length), args.length);
+        int workers = Runtime.getRuntime().availableProcessors();
+        int queue = 0;
+        long timeout = 0;
+        for (String option : options) {
+            if (option.startsWith("workers=")) {
+                workers = Integer.parseInt(option.substring("workers=".length()));
+            } else if (option.startsWith("queue=")) {
+                queue = Integer.parseInt(option.substring("queue=".length()));
+            } else if (option.startsWith("timeout=")) {
+                timeout = Long.parseLong(option.substring("timeout=".length()));
+            }
+        }
+        SolverServer solver = new SolverServer(engine, options, workers,
+                queue > 0 ? queue : workers * QUEUED_PER_WORKER, timeout);
+
+        try (ServerSocketChannel server = bind(options)) {
+            System.out.println("Listening on " + server.getLocalAddress() + ", engine: " + engine
+                    + (options.isEmpty() ? "" : " " + options));
+            Runtime.getRuntime().addShutdownHook(new Thread(() ->
+                    System.err.println("Answered " + solver.getServed() + " requests")));
+            solver.serve(server);
+        } finally {
+            solver.shutdown();
+        }
+    }
+}
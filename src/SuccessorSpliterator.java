@@ -0,0 +1,66 @@
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Makes the successors of a configuration one at a time, as they are asked
+ * for.  The successors are the values that may go in one cell, held as a
+ * bitmask (value v is bit v - 1), and a child is only built when the search
+ * gets to it, so a search that succeeds on the first child builds just that
+ * one.
+ *
+ * Values come out in ascending order.  trySplit() hands over the lower half
+ * of the values left, so a parallel stream of successors splits evenly down
+ * to single children.
+ *
+ * @author Blake Batson
+ */
+final class SuccessorSpliterator implements Spliterator<Configuration> {
+    private final IntFunction<Configuration> child;
+    private int left;
+
+    /**
+     * @param values the values to make children for, as a bitmask
+     * @param child builds the child with a value placed in the cell
+     */
+    SuccessorSpliterator(int values, IntFunction<Configuration> child) {
+        this.left = values;
+        this.child = child;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Configuration> action) {
+        if (left == 0) {
+            return false;
+        }
+        int value = Integer.numberOfTrailingZeros(left) + 1;
+        left &= left - 1;
+        action.accept(child.apply(value));
+        return true;
+    }
+
+    @Override
+    public Spliterator<Configuration> trySplit() {
+        int count = Integer.bitCount(left);
+        if (count < 2) {
+            return null;
+        }
+        // the lowest count / 2 values
+        int lower = 0;
+        for (int rest = left, i = 0; i < count / 2; i++, rest &= rest - 1) {
+            lower |= Integer.lowestOneBit(rest);
+        }
+        left &= ~lower;
+        return new SuccessorSpliterator(lower, child);
+    }
+
+    @Override
+    public long estimateSize() {
+        return Integer.bitCount(left);
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers partial boards that are known to have no solution below them,
+ * keyed by the hash of their grid.  A search that reaches one of them again,
+ * by a different order of moves, can give up on it straight away.
+ *
+ * The table has a fixed number of entries.  It is split into buckets of
+ * four and a hash can only live in its own bucket; when the bucket is full
+ * an entry is evicted with the clock (second chance) policy, so entries
+ * that keep being hit survive and ones that are never looked up again go.
+ *
+ * A table holds the verdicts for one board only.  It may be shared by the
+ * threads searching that board.
+ *
+ * @author Blake Batson
+ */
+public class TranspositionTable {
+    /** Entries per bucket */
+    private static final int WAYS = 4;
+
+    /** Marks a free entry, a hash of 0 is stored as 1 */
+    private static final long FREE = 0;
+
+    private final AtomicLongArray keys;
+    private final byte[] referenced;
+    private final byte[] hands;
+    private final int bucketMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Initialize an empty table.
+     *
+     * @param capacity how many boards to remember at most, rounded up to a
+     *  power of two
+     */
+    public TranspositionTable(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        }
+        int buckets = Math.max(1, Integer.highestOneBit(capacity - 1) * 2 / WAYS);
+        this.keys = new AtomicLongArray(buckets * WAYS);
+        this.referenced = new byte[buckets * WAYS];
+        this.hands = new byte[buckets];
+        this.bucketMask = buckets - 1;
+    }
+
+    /**
+     * Is a board known to have no solution below it?
+     *
+     * @param hash the hash of the board's grid
+     * @return true if the board is a known dead end
+     */
+    public boolean isDeadEnd(long hash) {
+        long key = key(hash);
+        int base = bucket(key) * WAYS;
+        for (int way = 0; way < WAYS; way++) {
+            if (keys.get(base + way) == key) {
+                referenced[base + way] = 1;
+                hits.increment();
+                return true;
+            }
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Remember that a board has no solution below it.
+     *
+     * @param hash the hash of the board's grid
+     */
+    public void storeDeadEnd(long hash) {
+        long key = key(hash);
+        int bucket = bucket(key);
+        int base = bucket * WAYS;
+        for (int way = 0; way < WAYS; way++) {
+            long stored = keys.get(base + way);
+            if (stored == key) {
+                return;
+            }
+            if (stored == FREE) {
+                keys.set(base + way, key);
+                stores.increment();
+                return;
+            }
+        }
+
+        // full bucket, sweep the hand past entries hit since its last visit
+        int hand = hands[bucket];
+        while (referenced[base + hand] != 0) {
+            referenced[base + hand] = 0;
+            hand = (hand + 1) % WAYS;
+        }
+        keys.set(base + hand, key);
+        hands[bucket] = (byte) ((hand + 1) % WAYS);
+        stores.increment();
+        evictions.increment();
+    }
+
+    private static long key(long hash) {
+        return hash == FREE ? 1 : hash;
+    }
+
+    private int bucket(long key) {
+        return (int) (key ^ (key >>> 32)) & bucketMask;
+    }
+
+    /**
+     * @return how many boards the table can hold
+     */
+    public int getCapacity() {
+        return keys.length();
+    }
+
+    /**
+     * @return lookups that found a dead end
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return lookups that found nothing
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return dead ends stored
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * @return dead ends pushed out to make room for newer ones
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the fraction of lookups that found a dead end
+     */
+    public double getHitRate() {
+        long lookups = getHits() + getMisses();
+        return lookups == 0 ? 0 : (double) getHits() / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("capacity %d, hits %d, misses %d (hit rate %.2f%%), stored %d, evicted %d",
+                getCapacity(), getHits(), getMisses(), 100 * getHitRate(), getStores(), getEvictions());
+    }
+}
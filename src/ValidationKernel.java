@@ -0,0 +1,62 @@
+/**
+ * Checks every line of a SkyscraperConfig against its borders, many lines
+ * at once.  The board is laid out for it as 2 * size blocks of STRIDE
+ * bytes: block y is row y, block size + x is column x, so the lines seen
+ * from one border step through the blocks together, one lane per line.
+ * Lanes past the size hold empty cells and the clues there are 0, so they
+ * never make a board invalid.
+ *
+ * The same rules as SkyscraperConfig.isValid() apply: a full line must
+ * show exactly its clue, and a line with empty cells must be able to show
+ * at least its clue once the empty cells before its tallest tower are
+ * filled.
+ *
+ * @author Blake Batson
+ */
+public interface ValidationKernel {
+    /** Bytes per line, the largest board SkyscraperConfig takes */
+    public static final int STRIDE = 16;
+
+    /**
+     * Check every line of a board.
+     *
+     * @param size the length of each side of the grid
+     * @param lines the rows then the columns of the grid, STRIDE bytes each
+     * @param clues the borders in NORTH, EAST, SOUTH, WEST order, STRIDE bytes each
+     * @return true if no line breaks its clue
+     */
+    public boolean isValid(int size, byte[] lines, byte[][] clues);
+
+    /**
+     * Find a kernel by name.
+     *
+     * @param name scalar, or vector for the Vector API kernel, which is
+     *  scalar where the Vector API is not available
+     * @return the kernel
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static ValidationKernel forName(String name) {
+        if (name.equals("scalar")) {
+            return ScalarKernel.INSTANCE;
+        } else if (name.equals("vector")) {
+            return vector();
+        }
+        throw new IllegalArgumentException("Unknown kernel: " + name);
+    }
+
+    /**
+     * The Vector API kernel is built from its own source root, since it needs
+     * jdk.incubator.vector to compile, and the JVM only has that module when
+     * it is run with --add-modules jdk.incubator.vector.  It is looked up by
+     * name so this falls back to the scalar kernel when either is missing.
+     *
+     * @return the Vector API kernel, or the scalar one
+     */
+    private static ValidationKernel vector() {
+        try {
+            return (ValidationKernel) Class.forName("VectorKernel").getField("INSTANCE").get(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return ScalarKernel.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing of a grid.  Every (cell, value) pair has
+ * its own 64 bit key and the hash of a grid is the xor of the keys of its
+ * filled cells, so placing or removing a value updates the hash with a
+ * single xor.  Empty cells contribute nothing.
+ *
+ * The keys depend only on the grid size and are shared by every board of
+ * that size.
+ *
+ * @author Blake Batson
+ */
+final class Zobrist {
+    /** Seed for the keys, fixed so hashes are the same from run to run */
+    private static final long SEED = 0x5ca1ab1e5eedL;
+
+    /** The keys of each grid size, made when first needed */
+    private static final long[][] KEYS = new long[Byte.MAX_VALUE + 1][];
+
+    private Zobrist() {
+    }
+
+    /**
+     * The keys for one grid size.  The key of value v in cell c is
+     * keys[c * size + v - 1].
+     *
+     * @param size the length of each side of the grid
+     * @return the keys, not a copy
+     */
+    static synchronized long[] keys(int size) {
+        if (KEYS[size] == null) {
+            SplittableRandom random = new SplittableRandom(SEED + size);
+            long[] keys = new long[size * size * size];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = random.nextLong();
+            }
+            KEYS[size] = keys;
+        }
+        return KEYS[size];
+    }
+}